@@ -0,0 +1,93 @@
+/*
+ * streamq: DataStreamController.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.loadtest;
+
+import net.ninjacat.streamq.MarkedQ;
+import net.ninjacat.streamq.MarkedQueue;
+import net.ninjacat.streamq.autoconfigure.StreamAdmission;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Controller following the pattern from readme: producer runs in a separate thread and response is written
+ * from the queue while it is being filled.
+ */
+@RestController
+@RequestMapping("/items")
+public class DataStreamController {
+    private static final int FLUSH_EVERY = 100;
+
+    private final DataStreamService dss;
+    private final StreamAdmission admission;
+
+    @Autowired
+    public DataStreamController(final DataStreamService dss, final StreamAdmission admission) {
+        this.dss = dss;
+        this.admission = admission;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_PLAIN_VALUE)
+    public StreamingResponseBody getItems(@RequestParam("type") final String type,
+                                          @RequestParam(value = "capacity", defaultValue = "0") final int capacity) {
+        final MarkedQueue<DataItem> queue = createQueue(type, capacity);
+        admission.execute(() -> dss.getData(queue));
+        return out -> {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            int written = 0;
+            for (final DataItem item : queue) {
+                writer.write(String.valueOf(item.getId()));
+                writer.write(',');
+                writer.write(item.getPayload());
+                writer.write('\n');
+                if (written++ % FLUSH_EVERY == 0) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        };
+    }
+
+    private static MarkedQueue<DataItem> createQueue(final String type, final int capacity) {
+        final MarkedQ<DataItem> builder = MarkedQ.withMarker(DataItem.END);
+        if (capacity > 0) {
+            builder.withCapacity(capacity);
+        }
+        switch (type) {
+            case "linked":
+                return builder.linked().build();
+            case "array":
+                if (capacity <= 0) {
+                    throw new IllegalArgumentException("Array queue requires capacity");
+                }
+                return builder.array().build();
+            default:
+                throw new IllegalArgumentException("Unknown queue type: " + type);
+        }
+    }
+}
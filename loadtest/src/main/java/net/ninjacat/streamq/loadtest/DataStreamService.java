@@ -0,0 +1,51 @@
+/*
+ * streamq: DataStreamService.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.loadtest;
+
+import net.ninjacat.streamq.StreamQ;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Queue;
+
+@Service
+public class DataStreamService {
+
+    private final DataItemRepository repo;
+    private final EntityManager entityManager;
+
+    @Autowired
+    public DataStreamService(final DataItemRepository repo, final EntityManager entityManager) {
+        this.repo = repo;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Streams all the items into the queue. Items are detached as soon as they are read, so that persistence
+     * context does not grow with the stream.
+     */
+    @Transactional(readOnly = true)
+    public void getData(final Queue<DataItem> queue) {
+        StreamQ.read(repo.streamAll().peek(entityManager::detach))
+                .withMarker(DataItem.END)
+                .into(queue);
+    }
+}
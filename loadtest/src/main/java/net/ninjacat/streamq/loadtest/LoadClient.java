@@ -0,0 +1,175 @@
+/*
+ * streamq: LoadClient.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * HTTP client running a number of concurrent fast and slow consumers against the streaming endpoint.
+ * <p>
+ * Client runs in the same JVM as the server, so it counts rows in a fixed buffer without allocating anything per row,
+ * to keep its own footprint out of heap measurements.
+ */
+final class LoadClient {
+    private static final int READ_BUFFER = 8192;
+
+    private final LoadTestProperties properties;
+
+    LoadClient(final LoadTestProperties properties) {
+        this.properties = properties;
+    }
+
+    List<ConsumerResult> run(final URL url) throws InterruptedException {
+        final int consumers = properties.getFastConsumers() + properties.getSlowConsumers();
+        final ExecutorService pool = Executors.newFixedThreadPool(consumers);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<ConsumerResult>> running = new ArrayList<>();
+            for (int i = 0; i < consumers; i++) {
+                final boolean slow = i >= properties.getFastConsumers();
+                running.add(pool.submit(() -> {
+                    start.await();
+                    return consume(url, slow);
+                }));
+            }
+            start.countDown();
+            final List<ConsumerResult> results = new ArrayList<>();
+            for (final Future<ConsumerResult> result : running) {
+                try {
+                    results.add(result.get());
+                } catch (final ExecutionException e) {
+                    results.add(ConsumerResult.failed(e.getCause()));
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private ConsumerResult consume(final URL url, final boolean slow) throws IOException, InterruptedException {
+        final long started = System.nanoTime();
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return ConsumerResult.rejected(connection.getResponseCode());
+            }
+            final PushbackInputStream input = new PushbackInputStream(connection.getInputStream());
+            final int first = input.read();
+            final long firstByte = System.nanoTime();
+            if (first < 0) {
+                return new ConsumerResult(slow, firstByte - started, 0, firstByte - started);
+            }
+            input.unread(first);
+            final long rows = readRows(input, slow);
+            return new ConsumerResult(slow, firstByte - started, rows, System.nanoTime() - started);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private long readRows(final InputStream input, final boolean slow) throws IOException, InterruptedException {
+        final byte[] buffer = new byte[READ_BUFFER];
+        final long delay = properties.getSlowDelay().toMillis();
+        long rows = 0;
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != '\n') {
+                    continue;
+                }
+                rows++;
+                if (slow && rows % properties.getSlowBatch() == 0) {
+                    Thread.sleep(delay);
+                }
+            }
+        }
+        return rows;
+    }
+
+    static final class ConsumerResult {
+        private final boolean slow;
+        private final long timeToFirstByte;
+        private final long rows;
+        private final long duration;
+        private final int status;
+        private final Throwable error;
+
+        ConsumerResult(final boolean slow, final long timeToFirstByte, final long rows, final long duration) {
+            this(slow, timeToFirstByte, rows, duration, HttpURLConnection.HTTP_OK, null);
+        }
+
+        private ConsumerResult(final boolean slow, final long timeToFirstByte, final long rows, final long duration,
+                               final int status, final Throwable error) {
+            this.slow = slow;
+            this.timeToFirstByte = timeToFirstByte;
+            this.rows = rows;
+            this.duration = duration;
+            this.status = status;
+            this.error = error;
+        }
+
+        static ConsumerResult rejected(final int status) {
+            return new ConsumerResult(false, 0, 0, 0, status, null);
+        }
+
+        static ConsumerResult failed(final Throwable error) {
+            return new ConsumerResult(false, 0, 0, 0, 0, error);
+        }
+
+        boolean isSuccessful() {
+            return status == HttpURLConnection.HTTP_OK && error == null;
+        }
+
+        boolean isSlow() {
+            return slow;
+        }
+
+        long getTimeToFirstByte() {
+            return timeToFirstByte;
+        }
+
+        long getRows() {
+            return rows;
+        }
+
+        long getDuration() {
+            return duration;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        Throwable getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * streamq: LoadTestApplication.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.loadtest;
+
+import net.ninjacat.streamq.autoconfigure.StreamQAutoConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Load test of StreamQ with embedded database.
+ * <p>
+ * Fills H2 database with rows, then for each configured queue type runs a number of concurrent fast and slow
+ * HTTP consumers against {@link DataStreamController} and prints time-to-first-byte, throughput, peak heap
+ * and peak number of busy request, response writer and producer threads of the server.
+ */
+@SpringBootApplication
+@EnableConfigurationProperties(LoadTestProperties.class)
+public class LoadTestApplication implements ApplicationRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTestApplication.class);
+    private static final int INSERT_BATCH = 1000;
+
+    private final LoadTestProperties properties;
+    private final JdbcTemplate jdbc;
+    private final Environment environment;
+    private final WebServerApplicationContext context;
+    private final ThreadPoolTaskExecutor writers;
+    private final ThreadPoolTaskExecutor producers;
+
+    @Autowired
+    public LoadTestApplication(final LoadTestProperties properties,
+                               final JdbcTemplate jdbc,
+                               final Environment environment,
+                               final WebServerApplicationContext context,
+                               @Qualifier(ResponseWriterConfiguration.WRITER_EXECUTOR_BEAN_NAME)
+                               final ThreadPoolTaskExecutor writers,
+                               @Qualifier(StreamQAutoConfiguration.EXECUTOR_BEAN_NAME)
+                               final ThreadPoolTaskExecutor producers) {
+        this.properties = properties;
+        this.jdbc = jdbc;
+        this.environment = environment;
+        this.context = context;
+        this.writers = writers;
+        this.producers = producers;
+    }
+
+    public static void main(final String[] args) {
+        final ConfigurableApplicationContext context = SpringApplication.run(LoadTestApplication.class, args);
+        System.exit(SpringApplication.exit(context));
+    }
+
+    @Override
+    public void run(final ApplicationArguments args) throws Exception {
+        seed();
+        final String port = environment.getRequiredProperty("local.server.port");
+        final LoadClient client = new LoadClient(properties);
+        final ResourceSampler.ServerPools pools = new ResourceSampler.ServerPools(
+                requestThreads(), writers::getActiveCount, producers::getActiveCount);
+        final List<ScenarioReport> reports = new ArrayList<>();
+        for (final String scenario : properties.getScenarios()) {
+            LOG.info("Running scenario {}", scenario);
+            reports.add(runScenario(client, pools, port, scenario));
+        }
+        final StringBuilder summary = new StringBuilder(ScenarioReport.HEADER);
+        reports.forEach(report -> summary.append('\n').append(report));
+        LOG.info("Load test results ({} rows, {} fast and {} slow consumers)\n{}",
+                properties.getRows(), properties.getFastConsumers(), properties.getSlowConsumers(), summary);
+    }
+
+    private ScenarioReport runScenario(final LoadClient client,
+                                       final ResourceSampler.ServerPools pools,
+                                       final String port,
+                                       final String scenario) throws Exception {
+        final String[] config = scenario.split(":");
+        final String query = config.length > 1 ? "type=" + config[0] + "&capacity=" + config[1] : "type=" + config[0];
+        final URL url = new URL("http://localhost:" + port + "/items?" + query);
+        final ResourceSampler sampler = ResourceSampler.start(pools);
+        final long started = System.nanoTime();
+        final List<LoadClient.ConsumerResult> results;
+        try {
+            results = client.run(url);
+        } finally {
+            sampler.close();
+        }
+        final long elapsed = System.nanoTime() - started;
+        results.stream()
+                .filter(result -> result.getError() != null)
+                .forEach(result -> LOG.warn("Consumer failed", result.getError()));
+        return new ScenarioReport(scenario, results, elapsed, sampler);
+    }
+
+    /**
+     * @return Gauge of busy Tomcat request threads
+     */
+    private IntSupplier requestThreads() {
+        final Executor executor = ((TomcatWebServer) context.getWebServer()).getTomcat()
+                .getConnector()
+                .getProtocolHandler()
+                .getExecutor();
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor)::getActiveCount;
+        }
+        LOG.warn("Cannot measure request threads of {}", executor);
+        return () -> 0;
+    }
+
+    private void seed() {
+        LOG.info("Inserting {} rows", properties.getRows());
+        final String payload = String.join("", Collections.nCopies(properties.getPayloadSize(), "x"));
+        for (int start = 0; start < properties.getRows(); start += INSERT_BATCH) {
+            final List<Object[]> batch = IntStream.range(start, Math.min(start + INSERT_BATCH, properties.getRows()))
+                    .mapToObj(id -> new Object[]{(long) id, payload})
+                    .collect(Collectors.toList());
+            jdbc.batchUpdate("insert into data_item (id, payload) values (?, ?)", batch);
+        }
+    }
+}
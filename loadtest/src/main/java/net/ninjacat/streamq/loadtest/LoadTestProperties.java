@@ -0,0 +1,117 @@
+/*
+ * streamq: LoadTestProperties.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.loadtest;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Load test settings, bound to {@code loadtest.*}
+ */
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestProperties {
+    /**
+     * Number of rows in the database
+     */
+    private int rows = 200_000;
+    /**
+     * Length of the payload of each row
+     */
+    private int payloadSize = 100;
+    /**
+     * Queue configurations to test, as {@code type[:capacity]}
+     */
+    private List<String> scenarios = new ArrayList<>(Arrays.asList("linked", "linked:1000", "array:1000"));
+    /**
+     * Number of consumers reading response as fast as possible
+     */
+    private int fastConsumers = 16;
+    /**
+     * Number of consumers pausing while reading response
+     */
+    private int slowConsumers = 4;
+    /**
+     * Pause of slow consumers after each {@link #slowBatch} rows
+     */
+    private Duration slowDelay = Duration.ofMillis(5);
+    /**
+     * Number of rows slow consumers read between pauses
+     */
+    private int slowBatch = 100;
+
+    public int getRows() {
+        return rows;
+    }
+
+    public void setRows(final int rows) {
+        this.rows = rows;
+    }
+
+    public int getPayloadSize() {
+        return payloadSize;
+    }
+
+    public void setPayloadSize(final int payloadSize) {
+        this.payloadSize = payloadSize;
+    }
+
+    public List<String> getScenarios() {
+        return scenarios;
+    }
+
+    public void setScenarios(final List<String> scenarios) {
+        this.scenarios = scenarios;
+    }
+
+    public int getFastConsumers() {
+        return fastConsumers;
+    }
+
+    public void setFastConsumers(final int fastConsumers) {
+        this.fastConsumers = fastConsumers;
+    }
+
+    public int getSlowConsumers() {
+        return slowConsumers;
+    }
+
+    public void setSlowConsumers(final int slowConsumers) {
+        this.slowConsumers = slowConsumers;
+    }
+
+    public Duration getSlowDelay() {
+        return slowDelay;
+    }
+
+    public void setSlowDelay(final Duration slowDelay) {
+        this.slowDelay = slowDelay;
+    }
+
+    public int getSlowBatch() {
+        return slowBatch;
+    }
+
+    public void setSlowBatch(final int slowBatch) {
+        this.slowBatch = slowBatch;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * streamq: ResourceSampler.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Periodically samples heap usage and number of busy threads of the server pools to find their peaks while a
+ * scenario runs.
+ * <p>
+ * Threads are counted per server pool rather than for the whole JVM, so that threads of {@link LoadClient} running in
+ * the same JVM are not included.
+ */
+final class ResourceSampler {
+    private static final long SAMPLE_INTERVAL_MS = 20;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ServerPools pools;
+    private final ScheduledExecutorService timer;
+    private final ScheduledFuture<?> sampling;
+    private volatile long peakHeap;
+    private volatile int peakRequestThreads;
+    private volatile int peakWriterThreads;
+    private volatile int peakProducerThreads;
+
+    private ResourceSampler(final ServerPools pools) {
+        this.pools = pools;
+        System.gc();
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "resource-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampling = timer.scheduleAtFixedRate(this::sample, 0, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    static ResourceSampler start(final ServerPools pools) {
+        return new ResourceSampler(pools);
+    }
+
+    long getPeakHeap() {
+        return peakHeap;
+    }
+
+    /**
+     * @return Peak number of busy servlet container request threads
+     */
+    int getPeakRequestThreads() {
+        return peakRequestThreads;
+    }
+
+    /**
+     * @return Peak number of busy MVC async threads writing responses from the queues
+     */
+    int getPeakWriterThreads() {
+        return peakWriterThreads;
+    }
+
+    /**
+     * @return Peak number of busy StreamQ producer threads
+     */
+    int getPeakProducerThreads() {
+        return peakProducerThreads;
+    }
+
+    void close() {
+        sampling.cancel(false);
+        timer.shutdown();
+        sample();
+    }
+
+    private void sample() {
+        peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+        peakRequestThreads = Math.max(peakRequestThreads, pools.requestThreads.getAsInt());
+        peakWriterThreads = Math.max(peakWriterThreads, pools.writerThreads.getAsInt());
+        peakProducerThreads = Math.max(peakProducerThreads, pools.producerThreads.getAsInt());
+    }
+
+    /**
+     * Gauges of busy threads in the server pools
+     */
+    static final class ServerPools {
+        private final IntSupplier requestThreads;
+        private final IntSupplier writerThreads;
+        private final IntSupplier producerThreads;
+
+        ServerPools(final IntSupplier requestThreads,
+                    final IntSupplier writerThreads,
+                    final IntSupplier producerThreads) {
+            this.requestThreads = requestThreads;
+            this.writerThreads = writerThreads;
+            this.producerThreads = producerThreads;
+        }
+    }
+}
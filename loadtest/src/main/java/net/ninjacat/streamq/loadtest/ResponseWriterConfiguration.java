@@ -0,0 +1,55 @@
+/*
+ * streamq: ResponseWriterConfiguration.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.loadtest;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Dedicated pool for MVC async requests which write responses from the queues.
+ * <p>
+ * StreamQ executor suppresses Spring Boot application task executor, so without this pool responses would be
+ * written from unbounded and unmeasurable {@code SimpleAsyncTaskExecutor}. Pool is configured with
+ * {@code spring.task.execution} properties.
+ */
+@Configuration
+public class ResponseWriterConfiguration implements WebMvcConfigurer {
+    static final String WRITER_EXECUTOR_BEAN_NAME = "responseWriterExecutor";
+
+    private final ThreadPoolTaskExecutor writers;
+
+    public ResponseWriterConfiguration(@Qualifier(WRITER_EXECUTOR_BEAN_NAME) final ThreadPoolTaskExecutor writers) {
+        this.writers = writers;
+    }
+
+    @Bean(name = WRITER_EXECUTOR_BEAN_NAME)
+    public static ThreadPoolTaskExecutor responseWriterExecutor(final TaskExecutorBuilder builder) {
+        return builder.threadNamePrefix("response-writer-").build();
+    }
+
+    @Override
+    public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(writers);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * streamq: ScenarioReport.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.loadtest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Results of a single queue configuration
+ */
+final class ScenarioReport {
+    static final String HEADER = String.format("%-14s %6s %6s %9s %9s %9s %12s %10s %8s %8s %9s",
+            "queue", "ok", "failed", "ttfb p50", "ttfb p95", "ttfb max", "rows/s", "peak heap",
+            "requests", "writers", "producers");
+
+    private final String scenario;
+    private final List<LoadClient.ConsumerResult> results;
+    private final long elapsed;
+    private final ResourceSampler resources;
+
+    ScenarioReport(final String scenario, final List<LoadClient.ConsumerResult> results, final long elapsed,
+                   final ResourceSampler resources) {
+        this.scenario = scenario;
+        this.results = results;
+        this.elapsed = elapsed;
+        this.resources = resources;
+    }
+
+    @Override
+    public String toString() {
+        final List<Long> ttfb = results.stream()
+                .filter(LoadClient.ConsumerResult::isSuccessful)
+                .map(LoadClient.ConsumerResult::getTimeToFirstByte)
+                .sorted()
+                .collect(Collectors.toList());
+        final long rows = results.stream().mapToLong(LoadClient.ConsumerResult::getRows).sum();
+        final double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+        return String.format("%-14s %6d %6d %9s %9s %9s %12.0f %8dMB %8d %8d %9d",
+                scenario,
+                ttfb.size(),
+                results.size() - ttfb.size(),
+                millis(percentile(ttfb, 50)),
+                millis(percentile(ttfb, 95)),
+                millis(percentile(ttfb, 100)),
+                rows / seconds,
+                resources.getPeakHeap() / (1024 * 1024),
+                resources.getPeakRequestThreads(),
+                resources.getPeakWriterThreads(),
+                resources.getPeakProducerThreads());
+    }
+
+    private static long percentile(final List<Long> sorted, final int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private static String millis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos) + "ms";
+    }
+}
@@ -33,6 +33,7 @@ import java.util.stream.StreamSupport;
  */
 public final class ArrayMarkedQueue<E> extends ArrayBlockingQueue<E> implements MarkedQueue<E> {
     private final E marker;
+    private final long streamId = StreamEvents.nextStreamId();
 
     public ArrayMarkedQueue(final int capacity, final boolean fair, final E marker) {
         super(capacity, fair);
@@ -66,6 +67,11 @@ public final class ArrayMarkedQueue<E> extends ArrayBlockingQueue<E> implements
         return marker;
     }
 
+    @Override
+    public long getStreamId() {
+        return streamId;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) return true;
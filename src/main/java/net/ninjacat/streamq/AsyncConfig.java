@@ -28,6 +28,13 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.util.concurrent.Executors;
 
+/**
+ * Minimal async configuration for applications which don't have one.
+ *
+ * @deprecated Spring Boot applications get bounded producer executor and limits on active streams from
+ * {@link net.ninjacat.streamq.autoconfigure.StreamQAutoConfiguration}
+ */
+@Deprecated
 @Configuration
 @EnableAsync
 public class AsyncConfig {
@@ -0,0 +1,121 @@
+/*
+ * streamq: ByteBufferPool.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed pool of direct {@link ByteBuffer}s of the same size.
+ * <p>
+ * All buffers are allocated when the pool is created. When there are no free buffers {@link #acquire()} waits
+ * for one to be released, so total amount of memory used for chunks is bounded by the pool. Pool can be shared
+ * between several {@link ByteChunkQueue}s.
+ * <p>
+ * Pool keeps track of acquired buffers by identity, so that buffer released twice is rejected instead of being handed
+ * out to two producers at once.
+ */
+public final class ByteBufferPool {
+    private final int bufferSize;
+    private final int size;
+    private final BlockingQueue<ByteBuffer> free;
+    private final Set<ByteBuffer> all;
+    private final Set<ByteBuffer> acquired;
+
+    /**
+     * Creates a pool of direct buffers
+     *
+     * @param buffers    Number of buffers in the pool
+     * @param bufferSize Capacity of each buffer in bytes
+     */
+    public ByteBufferPool(final int buffers, final int bufferSize) {
+        if (buffers <= 0) throw new IllegalArgumentException("number of buffers must be greater than zero");
+        if (bufferSize <= 0) throw new IllegalArgumentException("buffer size must be greater than zero");
+        this.bufferSize = bufferSize;
+        this.size = buffers;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.all = Collections.newSetFromMap(new IdentityHashMap<>(buffers));
+        this.acquired = Collections.newSetFromMap(new IdentityHashMap<>(buffers));
+        for (int i = 0; i < buffers; i++) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+            all.add(buffer);
+            free.add(buffer);
+        }
+    }
+
+    /**
+     * Takes a free buffer from the pool, waiting for one to be released if necessary
+     *
+     * @return Empty buffer ready to be filled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ByteBuffer acquire() throws InterruptedException {
+        final ByteBuffer buffer = free.take();
+        synchronized (acquired) {
+            acquired.add(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns buffer to the pool. Buffer must not be used after it is released.
+     *
+     * @param buffer Buffer previously acquired from this pool
+     * @throws IllegalArgumentException if buffer does not belong to this pool
+     * @throws IllegalStateException    if buffer is not currently acquired, e.g. it was already released
+     */
+    public void release(final ByteBuffer buffer) {
+        if (!all.contains(buffer)) {
+            throw new IllegalArgumentException("buffer does not belong to this pool");
+        }
+        synchronized (acquired) {
+            if (!acquired.remove(buffer)) {
+                throw new IllegalStateException("buffer released more than once");
+            }
+        }
+        ((Buffer) buffer).clear();
+        free.add(buffer);
+    }
+
+    /**
+     * @return Capacity of each buffer in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return Total number of buffers in the pool
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Number of buffers currently available
+     */
+    public int getAvailable() {
+        return free.size();
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * streamq: ByteChunkQueue.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implementation of {@link MarkedQueue} passing chunks of pre-encoded binary data in direct {@link ByteBuffer}s
+ * taken from {@link ByteBufferPool}.
+ * <p>
+ * Producer fills buffers taken with {@link #acquire()} and puts them into the queue, or just writes data into
+ * {@link #writer()} channel. Consumer writes chunks into a channel with {@link #transferTo(WritableByteChannel)}, which
+ * uses gathering writes when possible and returns every chunk to the pool after it is written. No memory is allocated
+ * per chunk.
+ * <p>
+ * If consumer fails the stream is aborted: chunks in the queue are returned to the pool and producer fails on the next
+ * attempt to acquire or put a chunk.
+ * <p>
+ * Queue can also be consumed as any other {@link MarkedQueue}, but chunks handed out by iterators and streams are
+ * returned to the pool on the next call to {@link Iterator#hasNext()} or {@link Iterator#next()}, so each chunk is only
+ * valid until the next one is requested and must not be retained. Chunks passed to
+ * {@link #consumeInParallel(Executor, int, int, Consumer)} are returned to the pool once the sink returns. Consumer
+ * which stops iterating before the end of stream must {@link #abort()} it.
+ */
+public final class ByteChunkQueue extends ArrayBlockingQueue<ByteBuffer> implements MarkedQueue<ByteBuffer> {
+    private static final int MAX_GATHER = 16;
+
+    private final ByteBufferPool pool;
+    private final ByteBuffer marker;
+    private final long streamId = StreamEvents.nextStreamId();
+    private volatile boolean aborted;
+
+    /**
+     * Creates a queue for chunks from the pool. Queue capacity is enough to hold all the buffers of the pool, so
+     * producer is only limited by the number of free buffers.
+     *
+     * @param pool Pool of buffers
+     */
+    public ByteChunkQueue(final ByteBufferPool pool) {
+        super(pool.getSize() + 1);
+        this.pool = pool;
+        this.marker = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Takes an empty buffer from the pool, waiting for one to become available.
+     *
+     * @return Empty buffer to fill. Must be flipped before it is put into the queue
+     * @throws InterruptedException  if interrupted while waiting
+     * @throws IllegalStateException if the stream was aborted by the consumer
+     */
+    public ByteBuffer acquire() throws InterruptedException {
+        checkNotAborted();
+        final ByteBuffer buffer = pool.acquire();
+        if (aborted) {
+            pool.release(buffer);
+            checkNotAborted();
+        }
+        return buffer;
+    }
+
+    /**
+     * Creates a channel which copies written data into pooled buffers and puts every filled buffer into the queue.
+     * Closing the channel puts last partially filled buffer and end-of-stream marker into the queue.
+     *
+     * @return Channel for producer to write to
+     */
+    public WritableByteChannel writer() {
+        return new ChunkWriter();
+    }
+
+    /**
+     * Writes all the chunks into the channel until end-of-stream marker is found. Each chunk is returned to the pool
+     * once written. Channel must be in blocking mode.
+     *
+     * @param channel Channel to write to. When it is a {@link GatheringByteChannel}, several chunks are written at once
+     * @return Number of bytes written
+     * @throws IOException if channel fails or consumer is interrupted. Stream is aborted in this case
+     */
+    public long transferTo(final WritableByteChannel channel) throws IOException {
+        final List<ByteBuffer> batch = new ArrayList<>(MAX_GATHER);
+        final ByteBuffer[] chunks = new ByteBuffer[MAX_GATHER];
+        long transferred = 0;
+        try {
+            while (true) {
+                takeBatch(batch);
+                int count = 0;
+                boolean endOfStream = false;
+                for (final ByteBuffer chunk : batch) {
+                    if (chunk == marker) {
+                        endOfStream = true;
+                        break;
+                    }
+                    chunks[count++] = chunk;
+                }
+                try {
+                    transferred += write(channel, chunks, count);
+                } finally {
+                    for (int i = 0; i < count; i++) {
+                        pool.release(chunks[i]);
+                        chunks[i] = null;
+                    }
+                    batch.clear();
+                }
+                if (endOfStream) {
+                    return transferred;
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Aborts the stream. All chunks in the queue are returned to the pool, producer will fail on the next attempt to
+     * acquire a buffer or put it into the queue.
+     */
+    public void abort() {
+        aborted = true;
+        ByteBuffer chunk;
+        while ((chunk = poll()) != null) {
+            if (chunk != marker) {
+                pool.release(chunk);
+            }
+        }
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    @Override
+    public void put(final ByteBuffer chunk) throws InterruptedException {
+        rejectIfAborted(chunk);
+        super.put(chunk);
+        releaseIfAborted(chunk);
+    }
+
+    @Override
+    public boolean offer(final ByteBuffer chunk) {
+        rejectIfAborted(chunk);
+        final boolean added = super.offer(chunk);
+        releaseIfAborted(chunk);
+        return added;
+    }
+
+    @Override
+    public boolean offer(final ByteBuffer chunk, final long timeout, final TimeUnit unit) throws InterruptedException {
+        rejectIfAborted(chunk);
+        final boolean added = super.offer(chunk, timeout, unit);
+        releaseIfAborted(chunk);
+        return added;
+    }
+
+    /**
+     * Iterates over chunks until end-of-stream marker is found. Each chunk is returned to the pool on the next call to
+     * {@link Iterator#hasNext()} or {@link Iterator#next()}.
+     *
+     * @return Iterator over chunks
+     */
+    @Override
+    public Iterator<ByteBuffer> iterator() {
+        return new ChunkIterator();
+    }
+
+    /**
+     * Streams chunks until end-of-stream marker is found. Each chunk is returned to the pool when the next one is
+     * requested, so chunks must be consumed by the terminal operation and not collected.
+     *
+     * @return Sequential stream of chunks
+     */
+    @Override
+    public Stream<ByteBuffer> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Chunks cannot be split between threads, as splitting takes them ahead of consumption and they would be returned
+     * to the pool before being processed. Use {@link #consumeInParallel(Executor, int, int, Consumer)} instead.
+     *
+     * @return Sequential stream of chunks
+     */
+    @Override
+    public Stream<ByteBuffer> parallelStream() {
+        return stream();
+    }
+
+    /**
+     * Consumes chunks with several workers. Each chunk is returned to the pool once the sink returns.
+     */
+    @Override
+    public CompletableFuture<Void> consumeInParallel(final Executor executor,
+                                                     final int workers,
+                                                     final int batchSize,
+                                                     final Consumer<? super ByteBuffer> sink) {
+        return MarkedQueueWorkers.consume(this, executor, workers, batchSize, sink, pool::release);
+    }
+
+    @Override
+    public ByteBuffer getMarker() {
+        return marker;
+    }
+
+    @Override
+    public long getStreamId() {
+        return streamId;
+    }
+
+    private void takeBatch(final List<ByteBuffer> batch) throws InterruptedIOException {
+        if (drainTo(batch, MAX_GATHER) > 0) {
+            return;
+        }
+        final StreamEvents.Span wait = StreamEvents.consumerBlocked(streamId);
+        try {
+            batch.add(take());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for chunks");
+        } finally {
+            wait.complete();
+        }
+        drainTo(batch, MAX_GATHER - 1);
+    }
+
+    private static long write(final WritableByteChannel channel, final ByteBuffer[] chunks, final int count)
+            throws IOException {
+        long written = 0;
+        if (channel instanceof GatheringByteChannel) {
+            final GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            int first = 0;
+            while (first < count) {
+                written += gathering.write(chunks, first, count - first);
+                while (first < count && !chunks[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                while (chunks[i].hasRemaining()) {
+                    written += channel.write(chunks[i]);
+                }
+            }
+        }
+        return written;
+    }
+
+    private void rejectIfAborted(final ByteBuffer chunk) {
+        if (aborted && chunk != marker) {
+            pool.release(chunk);
+            checkNotAborted();
+        }
+    }
+
+    /**
+     * Handles abort which happened while chunk was being put into the queue
+     */
+    private void releaseIfAborted(final ByteBuffer chunk) {
+        if (aborted && chunk != marker) {
+            abort();
+        }
+    }
+
+    private void checkNotAborted() {
+        if (aborted) {
+            throw new IllegalStateException("stream was aborted by consumer");
+        }
+    }
+
+    /**
+     * Iterator returning every chunk to the pool when the next one is requested
+     */
+    private final class ChunkIterator implements Iterator<ByteBuffer> {
+        private final Iterator<ByteBuffer> chunks = MarkedQueueIterator.of(ByteChunkQueue.this, marker);
+        private ByteBuffer previous;
+
+        @Override
+        public boolean hasNext() {
+            releasePrevious();
+            return chunks.hasNext();
+        }
+
+        @Override
+        public ByteBuffer next() {
+            releasePrevious();
+            final ByteBuffer chunk = chunks.next();
+            previous = chunk == marker ? null : chunk;
+            return chunk;
+        }
+
+        private void releasePrevious() {
+            if (previous != null) {
+                pool.release(previous);
+                previous = null;
+            }
+        }
+    }
+
+    /**
+     * Producer side channel, copying data into pooled buffers.
+     * <p>
+     * Buffer methods are called through {@link Buffer} to stay binary compatible with Java 8.
+     */
+    private final class ChunkWriter implements WritableByteChannel {
+        private ByteBuffer current;
+        private boolean open = true;
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            final int written = src.remaining();
+            while (src.hasRemaining()) {
+                if (current == null) {
+                    current = acquireChunk();
+                }
+                copy(src, current);
+                if (!current.hasRemaining()) {
+                    putChunk();
+                }
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!open) {
+                return;
+            }
+            open = false;
+            if (current != null && current.position() > 0) {
+                putChunk();
+            } else if (current != null) {
+                pool.release(current);
+                current = null;
+            }
+            try {
+                put(marker);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while putting end-of-stream marker");
+            }
+        }
+
+        private ByteBuffer acquireChunk() throws IOException {
+            try {
+                return acquire();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for free buffer");
+            } catch (final IllegalStateException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        private void putChunk() throws IOException {
+            final ByteBuffer chunk = current;
+            current = null;
+            ((Buffer) chunk).flip();
+            try {
+                put(chunk);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.release(chunk);
+                throw new InterruptedIOException("Interrupted while putting chunk into the queue");
+            } catch (final IllegalStateException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        private void copy(final ByteBuffer src, final ByteBuffer dst) {
+            if (src.remaining() <= dst.remaining()) {
+                dst.put(src);
+            } else {
+                final int limit = src.limit();
+                ((Buffer) src).limit(src.position() + dst.remaining());
+                dst.put(src);
+                ((Buffer) src).limit(limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * streamq: ConflatingMarkedQueue.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implementation of {@link MarkedQueue} keeping only the latest element for each key.
+ * <p>
+ * When an element is put into the queue while an older element with the same key has not been consumed yet, the
+ * older element is replaced and the new one takes its position in the queue. Slow consumer thus receives only the
+ * latest value for every key, and memory used by the queue is bounded by the number of distinct keys.
+ * <p>
+ * Capacity of this queue limits the number of distinct keys. Replacing an element never blocks.
+ *
+ * @param <E> Type of elements in the Queue
+ */
+public final class ConflatingMarkedQueue<E> extends AbstractQueue<E> implements MarkedQueue<E> {
+    private final E marker;
+    private final long streamId = StreamEvents.nextStreamId();
+    private final Function<? super E, ?> keyOf;
+    private final int capacity;
+    private final Map<Object, E> elements;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private boolean markerPending;
+
+    public ConflatingMarkedQueue(final Function<? super E, ?> keyOf, final E marker) {
+        this(keyOf, Integer.MAX_VALUE, marker);
+    }
+
+    /**
+     * @param keyOf    Function returning key of an element
+     * @param capacity Maximum number of distinct keys in the queue
+     * @param marker   Marker object indicating end of queue
+     */
+    public ConflatingMarkedQueue(final Function<? super E, ?> keyOf, final int capacity, final E marker) {
+        if (marker == null) {
+            throw new IllegalArgumentException("marker cannot be null");
+        }
+        if (keyOf == null) {
+            throw new IllegalArgumentException("key function cannot be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        }
+        this.marker = marker;
+        this.keyOf = keyOf;
+        this.capacity = capacity;
+        this.elements = new LinkedHashMap<>();
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        final Object key = keyOf(e);
+        lock.lock();
+        try {
+            if (!hasRoomFor(e, key)) {
+                return false;
+            }
+            enqueue(e, key);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit) throws InterruptedException {
+        final Object key = keyOf(e);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!hasRoomFor(e, key)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(e, key);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(final E e) throws InterruptedException {
+        final Object key = keyOf(e);
+        lock.lockInterruptibly();
+        try {
+            while (!hasRoomFor(e, key)) {
+                notFull.await();
+            }
+            enqueue(e, key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            E element;
+            while ((element = dequeue()) == null) {
+                notEmpty.await();
+            }
+            return element;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            E element;
+            while ((element = dequeue()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return element;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            if (!elements.isEmpty()) {
+                return elements.values().iterator().next();
+            }
+            return markerPending ? marker : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException("cannot drain queue to itself");
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            E element;
+            while (drained < maxElements && (element = dequeue()) != null) {
+                c.add(element);
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return elements.size() + (markerPending ? 1 : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - elements.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        lock.lock();
+        try {
+            return elements.containsValue(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        lock.lock();
+        try {
+            final boolean removed = elements.values().remove(o);
+            if (removed) {
+                notFull.signal();
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        lock.lock();
+        try {
+            return elements.values().toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("SuspiciousToArrayCall")
+    public <T> T[] toArray(final T[] a) {
+        lock.lock();
+        try {
+            return elements.values().toArray(a);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return new ArrayList<>(elements.values()).toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return MarkedQueueIterator.of(this, marker);
+    }
+
+    @Override
+    public Stream<E> stream() {
+        return StreamSupport.stream(MarkedQueueIterable.of(this, marker).spliterator(), false);
+    }
+
+    @Override
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(MarkedQueueIterable.of(this, marker).spliterator(), true);
+    }
+
+    @Override
+    public E getMarker() {
+        return marker;
+    }
+
+    @Override
+    public long getStreamId() {
+        return streamId;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConflatingMarkedQueue)) return false;
+        final ConflatingMarkedQueue<?> markedQueue = (ConflatingMarkedQueue<?>) o;
+        return Objects.equals(marker, markedQueue.marker);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(marker);
+    }
+
+    private Object keyOf(final E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return e == marker ? null : keyOf.apply(e);
+    }
+
+    private boolean hasRoomFor(final E e, final Object key) {
+        return e == marker || elements.size() < capacity || elements.containsKey(key);
+    }
+
+    /**
+     * Adds element to the queue or replaces older element with the same key, keeping its position.
+     * Marker is kept aside and is returned only after all the elements are consumed.
+     */
+    private void enqueue(final E e, final Object key) {
+        if (e == marker) {
+            markerPending = true;
+        } else {
+            elements.put(key, e);
+        }
+        notEmpty.signal();
+    }
+
+    private E dequeue() {
+        if (!elements.isEmpty()) {
+            final Iterator<E> oldest = elements.values().iterator();
+            final E element = oldest.next();
+            oldest.remove();
+            notFull.signal();
+            return element;
+        }
+        if (markerPending) {
+            markerPending = false;
+            return marker;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * streamq: JfrStreamEvents.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events of StreamQ. This class must only be loaded when {@code jdk.jfr} module is available.
+ */
+final class JfrStreamEvents {
+    private static final String CATEGORY = "StreamQ";
+
+    private JfrStreamEvents() {
+    }
+
+    static StreamEvents.StreamSpan streamStarted(final long streamId) {
+        final StreamStartEvent start = new StreamStartEvent();
+        start.streamId = streamId;
+        start.commit();
+        final StreamEvent stream = new StreamEvent();
+        stream.streamId = streamId;
+        stream.begin();
+        return stream;
+    }
+
+    static StreamEvents.Span producerBlocked(final long streamId) {
+        final ProducerBlockedEvent event = new ProducerBlockedEvent();
+        event.streamId = streamId;
+        event.begin();
+        return event;
+    }
+
+    static StreamEvents.Span consumerBlocked(final long streamId) {
+        final ConsumerBlockedEvent event = new ConsumerBlockedEvent();
+        event.streamId = streamId;
+        event.begin();
+        return event;
+    }
+
+    static StreamEvents.Span batchTaken(final long streamId, final int batchSize) {
+        final BatchEvent event = new BatchEvent();
+        event.streamId = streamId;
+        event.batchSize = batchSize;
+        event.begin();
+        return event;
+    }
+
+    @Name("net.ninjacat.streamq.StreamStart")
+    @Label("Stream Start")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class StreamStartEvent extends Event {
+        @Label("Stream ID")
+        long streamId;
+    }
+
+    @Name("net.ninjacat.streamq.Stream")
+    @Label("Stream")
+    @Description("Producer reading the stream into the queue, from start to end-of-stream marker")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class StreamEvent extends Event implements StreamEvents.StreamSpan {
+        @Label("Stream ID")
+        long streamId;
+        @Label("Elements")
+        long elementCount;
+
+        @Override
+        public void complete(final long elements) {
+            elementCount = elements;
+            commit();
+        }
+    }
+
+    @Name("net.ninjacat.streamq.ProducerBlocked")
+    @Label("Producer Blocked")
+    @Description("Producer waiting for free space in a full queue")
+    @Category(CATEGORY)
+    @Threshold("10 ms")
+    static final class ProducerBlockedEvent extends Event implements StreamEvents.Span {
+        @Label("Stream ID")
+        long streamId;
+
+        @Override
+        public void complete() {
+            commit();
+        }
+    }
+
+    @Name("net.ninjacat.streamq.ConsumerBlocked")
+    @Label("Consumer Blocked")
+    @Description("Consumer waiting for elements in an empty queue")
+    @Category(CATEGORY)
+    @Threshold("10 ms")
+    static final class ConsumerBlockedEvent extends Event implements StreamEvents.Span {
+        @Label("Stream ID")
+        long streamId;
+
+        @Override
+        public void complete() {
+            commit();
+        }
+    }
+
+    @Name("net.ninjacat.streamq.Batch")
+    @Label("Batch")
+    @Description("Worker processing a batch of elements taken from the queue")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    @Threshold("10 ms")
+    static final class BatchEvent extends Event implements StreamEvents.Span {
+        @Label("Stream ID")
+        long streamId;
+        @Label("Batch Size")
+        int batchSize;
+
+        @Override
+        public void complete() {
+            commit();
+        }
+    }
+}
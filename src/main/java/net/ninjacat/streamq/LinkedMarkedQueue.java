@@ -33,6 +33,7 @@ import java.util.stream.StreamSupport;
  */
 public final class LinkedMarkedQueue<E> extends LinkedBlockingQueue<E> implements MarkedQueue<E> {
     private final E marker;
+    private final long streamId = StreamEvents.nextStreamId();
 
     public LinkedMarkedQueue(final E marker) {
         this(Integer.MAX_VALUE, marker);
@@ -78,4 +79,9 @@ public final class LinkedMarkedQueue<E> extends LinkedBlockingQueue<E> implement
     public E getMarker() {
         return marker;
     }
+
+    @Override
+    public long getStreamId() {
+        return streamId;
+    }
 }
@@ -36,15 +36,18 @@
 package net.ninjacat.streamq;
 
 import javax.validation.constraints.NotNull;
+import java.util.function.Function;
 
 /**
- * Builder for {@link MarkedQueue}. Allows to set capacity, type (linked or blocked) and marker object.
+ * Builder for {@link MarkedQueue}. Allows to set capacity, type (linked, array, striped or conflating) and marker object.
  *
  * @param <E> Type of elements in the Queue
  */
 public final class MarkedQ<E> {
     private int capacity;
     private QueueType queueType;
+    private int lanes;
+    private Function<? super E, ?> keyOf;
     private final E marker;
 
     public static <T> MarkedQ<T> withMarker(final @NotNull T marker) {
@@ -70,6 +73,36 @@ public final class MarkedQ<E> {
         return this;
     }
 
+    /**
+     * Creates a queue split into independent lanes, so that many concurrent producers don't contend on a single lock.
+     * Capacity is split evenly between the lanes, so a single producer can only use its lane's share of it.
+     *
+     * @param lanes Number of lanes
+     * @return this builder
+     * @see StripedMarkedQueue
+     */
+    public MarkedQ<E> striped(final int lanes) {
+        if (lanes <= 0) throw new IllegalArgumentException("number of lanes must be greater than zero");
+        this.queueType = QueueType.STRIPED;
+        this.lanes = lanes;
+        return this;
+    }
+
+    /**
+     * Creates a queue keeping only the latest element for each key. Element replacing an older one with the same key
+     * takes its position in the queue. Capacity limits number of distinct keys.
+     *
+     * @param keyOf Function returning key of an element
+     * @return this builder
+     * @see ConflatingMarkedQueue
+     */
+    public MarkedQ<E> conflating(final Function<? super E, ?> keyOf) {
+        if (keyOf == null) throw new IllegalArgumentException("key function cannot be null");
+        this.queueType = QueueType.CONFLATING;
+        this.keyOf = keyOf;
+        return this;
+    }
+
     public MarkedQ<E> withCapacity(final int capacity) {
         if (capacity <= 0) throw new IllegalArgumentException("capacity must be greater than zero");
         this.capacity = capacity;
@@ -77,16 +110,24 @@ public final class MarkedQ<E> {
     }
 
     public MarkedQueue<E> build() {
-        if (queueType == QueueType.LINKED) {
-            return new LinkedMarkedQueue<>(capacity, marker);
-        } else {
-            return new ArrayMarkedQueue<>(capacity, marker);
+        switch (queueType) {
+            case ARRAY:
+                return new ArrayMarkedQueue<>(capacity, marker);
+            case STRIPED:
+                return new StripedMarkedQueue<>(lanes, capacity, marker);
+            case CONFLATING:
+                return new ConflatingMarkedQueue<>(keyOf, capacity, marker);
+            case LINKED:
+            default:
+                return new LinkedMarkedQueue<>(capacity, marker);
         }
     }
 
     private enum QueueType {
         LINKED,
-        ARRAY;
+        ARRAY,
+        STRIPED,
+        CONFLATING;
     }
 
 
@@ -19,6 +19,9 @@
 package net.ninjacat.streamq;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /*
  * {@link java.util.concurrent.BlockingQueue} that provides {@link Iterator} to handle end of queue
@@ -34,4 +37,35 @@ public interface MarkedQueue<E> extends BlockingQueue<E> {
      * @return Marker object
      */
     E getMarker();
+
+    /**
+     * Get unique ID of the stream passing through this queue. ID is used to correlate diagnostic events.
+     * <p>
+     * Queues created by StreamQ have sequential IDs, other implementations are identified by their identity hash code
+     *
+     * @return Stream ID
+     */
+    default long getStreamId() {
+        return System.identityHashCode(this);
+    }
+
+    /**
+     * Consumes this queue with several workers running concurrently on the provided executor.
+     * <p>
+     * Elements are taken from the queue in batches of up to {@code batchSize} elements. All the workers terminate
+     * once end-of-stream marker is put into the queue. Marker is left in the queue after all workers are done.
+     *
+     * @param executor  Executor to run workers on. It must be able to run all the workers concurrently
+     * @param workers   Number of workers
+     * @param batchSize Maximum number of elements each worker takes from the queue at once
+     * @param sink      Consumer of the elements. Will be called from several threads concurrently
+     * @return {@link CompletableFuture} which completes when all the workers are done. If sink throws an
+     * exception, future will complete exceptionally after the queue is depleted
+     */
+    default CompletableFuture<Void> consumeInParallel(final Executor executor,
+                                                      final int workers,
+                                                      final int batchSize,
+                                                      final Consumer<? super E> sink) {
+        return MarkedQueueWorkers.consume(this, executor, workers, batchSize, sink);
+    }
 }
@@ -54,10 +54,16 @@ public final class MarkedQueueIterator<T> implements Iterator<T> {
     @Override
     public boolean hasNext() {
         if (peeked == null) {
+            peeked = queue.poll();
+        }
+        if (peeked == null) {
+            final StreamEvents.Span wait = StreamEvents.consumerBlocked(queue.getStreamId());
             try {
                 peeked = queue.take();
             } catch (final InterruptedException e) {
                 // do nothing
+            } finally {
+                wait.complete();
             }
         }
         return peeked != endOfStreamMark;
@@ -0,0 +1,192 @@
+/*
+ * streamq: MarkedQueueWorkers.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Pool of workers sharing elements of a single {@link MarkedQueue}.
+ * <p>
+ * Each worker takes a batch of elements from the queue at once, so that idle workers pick up the next batch
+ * while others are still busy with theirs. The worker which takes end-of-stream marker puts it back into
+ * the queue, so that every other worker will see it and terminate as well.
+ * <p>
+ * If sink fails, remaining elements are still taken from the queue, but not passed to the sink. This way
+ * producer is never left blocked on a full queue.
+ * <p>
+ * Queues of pooled elements can pass a release callback, which is called for every element taken from the queue
+ * after it was passed to the sink or skipped.
+ *
+ * @param <T> Type of elements in the queue
+ */
+final class MarkedQueueWorkers<T> {
+    private final MarkedQueue<T> queue;
+    private final T endOfStreamMark;
+    private final int batchSize;
+    private final Consumer<? super T> sink;
+    private final Consumer<? super T> release;
+    private final AtomicReference<Throwable> failure;
+
+    private MarkedQueueWorkers(final MarkedQueue<T> queue,
+                               final int batchSize,
+                               final Consumer<? super T> sink,
+                               final Consumer<? super T> release) {
+        this.queue = queue;
+        this.endOfStreamMark = queue.getMarker();
+        this.batchSize = batchSize;
+        this.sink = sink;
+        this.release = release;
+        this.failure = new AtomicReference<>();
+    }
+
+    /**
+     * Starts consuming the queue with a number of workers.
+     *
+     * @param queue     Queue to consume
+     * @param executor  Executor to run workers on. It must be able to run all the workers concurrently
+     * @param workers   Number of workers
+     * @param batchSize Maximum number of elements each worker takes from the queue at once
+     * @param sink      Consumer of the elements. Will be called from several threads concurrently
+     * @param <T>       Type of elements in the queue
+     * @return {@link CompletableFuture} which completes when all the workers are done
+     */
+    static <T> CompletableFuture<Void> consume(final MarkedQueue<T> queue,
+                                               final Executor executor,
+                                               final int workers,
+                                               final int batchSize,
+                                               final Consumer<? super T> sink) {
+        return consume(queue, executor, workers, batchSize, sink, element -> {
+        });
+    }
+
+    /**
+     * Starts consuming the queue with a number of workers, releasing every element once it is done with.
+     *
+     * @param queue     Queue to consume
+     * @param executor  Executor to run workers on. It must be able to run all the workers concurrently
+     * @param workers   Number of workers
+     * @param batchSize Maximum number of elements each worker takes from the queue at once
+     * @param sink      Consumer of the elements. Will be called from several threads concurrently
+     * @param release   Called for every element after it was passed to the sink or skipped because sink failed
+     * @param <T>       Type of elements in the queue
+     * @return {@link CompletableFuture} which completes when all the workers are done
+     */
+    static <T> CompletableFuture<Void> consume(final MarkedQueue<T> queue,
+                                               final Executor executor,
+                                               final int workers,
+                                               final int batchSize,
+                                               final Consumer<? super T> sink,
+                                               final Consumer<? super T> release) {
+        if (workers <= 0) throw new IllegalArgumentException("number of workers must be greater than zero");
+        if (batchSize <= 0) throw new IllegalArgumentException("batch size must be greater than zero");
+        if (sink == null) throw new IllegalArgumentException("sink cannot be null");
+
+        final MarkedQueueWorkers<T> pool = new MarkedQueueWorkers<>(queue, batchSize, sink, release);
+        final CompletableFuture<?>[] running = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            running[i] = CompletableFuture.runAsync(pool::work, executor);
+        }
+        return CompletableFuture.allOf(running).thenRun(pool::checkFailure);
+    }
+
+    private void work() {
+        final List<T> batch = new ArrayList<>(batchSize);
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            if (!takeBatch(batch)) {
+                return;
+            }
+            final StreamEvents.Span span = StreamEvents.batchTaken(queue.getStreamId(), batch.size());
+            try {
+                for (final T element : batch) {
+                    if (element == endOfStreamMark) {
+                        endOfStream = true;
+                        break;
+                    }
+                    accept(element);
+                }
+            } finally {
+                span.complete();
+            }
+            batch.clear();
+        }
+        passMarker();
+    }
+
+    /**
+     * Takes next batch of elements from the queue, waiting for at least one element to become available
+     *
+     * @return {@code false} if worker was interrupted while waiting
+     */
+    private boolean takeBatch(final List<T> batch) {
+        if (queue.drainTo(batch, batchSize) > 0) {
+            return true;
+        }
+        final StreamEvents.Span wait = StreamEvents.consumerBlocked(queue.getStreamId());
+        try {
+            batch.add(queue.take());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+            return false;
+        } finally {
+            wait.complete();
+        }
+        queue.drainTo(batch, batchSize - 1);
+        return true;
+    }
+
+    private void accept(final T element) {
+        try {
+            if (failure.get() == null) {
+                sink.accept(element);
+            }
+        } catch (final RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            release.accept(element);
+        }
+    }
+
+    /**
+     * Returns marker into the queue for sibling workers. Nothing is put into the queue after the marker, so
+     * there is always room for it.
+     */
+    private void passMarker() {
+        try {
+            queue.put(endOfStreamMark);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private void checkFailure() {
+        final Throwable cause = failure.get();
+        if (cause != null) {
+            throw new CompletionException(cause);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * streamq: ProducerScheduler.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Weighted fair scheduler of stream producers.
+ * <p>
+ * Limits the number of producers reading their streams at the same time to a number of slots. Producer holds a slot
+ * for a quota of elements or a time slice, whichever ends first, and then yields it. Free slot is given to the waiting
+ * producer which has received the least service relative to its weight (stride scheduling), so small interactive
+ * streams get slots quickly while bulk exports are in progress.
+ * <p>
+ * Producer yields between batches in its own thread, because streams from Spring Data repositories must be read
+ * inside the transaction which is bound to that thread.
+ *
+ * @see StreamQ.MarkedStreamReader#scheduledBy(ProducerScheduler, StreamPriority)
+ */
+public final class ProducerScheduler {
+    private static final long STRIDE_BASE = 1L << 20;
+    private static final Comparator<Ticket> BY_PASS =
+            Comparator.<Ticket>comparingLong(ticket -> ticket.pass).thenComparingLong(ticket -> ticket.sequence);
+
+    private final int slots;
+    private final int quota;
+    private final long timeSliceNanos;
+    private final ReentrantLock lock;
+    private final PriorityQueue<Ticket> waiting;
+    private int freeSlots;
+    private long virtualTime;
+    private long sequence;
+
+    /**
+     * @param slots     Maximum number of producers reading their streams at the same time
+     * @param quota     Maximum number of elements producer puts into the queue before yielding its slot
+     * @param timeSlice Maximum time producer holds its slot before yielding it
+     */
+    public ProducerScheduler(final int slots, final int quota, final Duration timeSlice) {
+        if (slots <= 0) throw new IllegalArgumentException("number of slots must be greater than zero");
+        if (quota <= 0) throw new IllegalArgumentException("quota must be greater than zero");
+        if (timeSlice == null || timeSlice.isNegative() || timeSlice.isZero()) {
+            throw new IllegalArgumentException("time slice must be positive");
+        }
+        this.slots = slots;
+        this.quota = quota;
+        this.timeSliceNanos = timeSlice.toNanos();
+        this.lock = new ReentrantLock();
+        this.waiting = new PriorityQueue<>(BY_PASS);
+        this.freeSlots = slots;
+    }
+
+    /**
+     * Registers new stream producer
+     *
+     * @param priority Priority class of the stream
+     * @return Ticket to acquire and release slots with
+     */
+    public Ticket register(final StreamPriority priority) {
+        return register(priority.getWeight());
+    }
+
+    /**
+     * Registers new stream producer
+     *
+     * @param weight Weight of the stream. Stream gets share of slots proportional to its weight
+     * @return Ticket to acquire and release slots with
+     */
+    public Ticket register(final int weight) {
+        if (weight <= 0) throw new IllegalArgumentException("weight must be greater than zero");
+        lock.lock();
+        try {
+            final Ticket ticket = new Ticket(STRIDE_BASE / weight, sequence++, lock.newCondition());
+            ticket.pass = virtualTime + ticket.stride;
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a free slot. Slots are given to waiting producers in order of their virtual time.
+     *
+     * @param ticket Ticket of the producer
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(final Ticket ticket) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (ticket.holding) {
+                return;
+            }
+            ticket.pass = Math.max(ticket.pass, virtualTime);
+            waiting.add(ticket);
+            grantFreeSlots();
+            awaitTurn(ticket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Charges the producer for one quantum of service and passes its slot to a waiting producer which has received
+     * less service. Returns when producer holds a slot again, which may be immediately if there is no such producer.
+     * <p>
+     * If interrupted, the slot is released before {@link InterruptedException} is thrown.
+     *
+     * @param ticket Ticket of the producer holding a slot
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void yieldSlot(final Ticket ticket) throws InterruptedException {
+        // not interruptible, otherwise slot held by interrupted producer would be lost
+        lock.lock();
+        try {
+            if (!ticket.holding) {
+                throw new IllegalStateException("producer does not hold a slot");
+            }
+            ticket.pass += ticket.stride;
+            if (waiting.isEmpty() || BY_PASS.compare(ticket, waiting.peek()) <= 0) {
+                return;
+            }
+            ticket.holding = false;
+            freeSlots++;
+            waiting.add(ticket);
+            grantFreeSlots();
+            awaitTurn(ticket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot held by the producer. Producer is charged for one quantum of service.
+     *
+     * @param ticket Ticket of the producer
+     */
+    public void release(final Ticket ticket) {
+        release(ticket, quota, timeSliceNanos);
+    }
+
+    /**
+     * Releases the slot held by the producer before its quantum of service is used up, e.g. when producer has to wait
+     * for a slow consumer. Producer is charged only for the part of the quantum it has used, that is the larger of
+     * used shares of the quota and of the time slice.
+     *
+     * @param ticket       Ticket of the producer
+     * @param elements     Number of elements produced since the slot was acquired
+     * @param elapsedNanos Time since the slot was acquired
+     */
+    public void release(final Ticket ticket, final int elements, final long elapsedNanos) {
+        lock.lock();
+        try {
+            if (ticket.holding) {
+                final double used = Math.max((double) elements / quota, (double) elapsedNanos / timeSliceNanos);
+                releaseSlot(ticket, (long) (ticket.stride * Math.min(1.0, Math.max(0.0, used))));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public int getQuota() {
+        return quota;
+    }
+
+    public long getTimeSliceNanos() {
+        return timeSliceNanos;
+    }
+
+    /**
+     * @return Number of slots not held by any producer
+     */
+    public int getFreeSlots() {
+        lock.lock();
+        try {
+            return freeSlots;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of producers waiting for a slot
+     */
+    public int getWaitingProducers() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitTurn(final Ticket ticket) throws InterruptedException {
+        while (!ticket.holding) {
+            try {
+                ticket.turn.await();
+            } catch (final InterruptedException e) {
+                if (ticket.holding) {
+                    releaseSlot(ticket, 0);
+                } else {
+                    waiting.remove(ticket);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void releaseSlot(final Ticket ticket, final long charge) {
+        ticket.holding = false;
+        ticket.pass += charge;
+        freeSlots++;
+        grantFreeSlots();
+    }
+
+    private void grantFreeSlots() {
+        while (freeSlots > 0 && !waiting.isEmpty()) {
+            final Ticket next = waiting.poll();
+            freeSlots--;
+            virtualTime = Math.max(virtualTime, next.pass);
+            next.holding = true;
+            next.turn.signal();
+        }
+    }
+
+    /**
+     * Registration of a single producer with the scheduler. Not thread-safe, must be used by a single producer.
+     */
+    public static final class Ticket {
+        private final long stride;
+        private final long sequence;
+        private final Condition turn;
+        private long pass;
+        private boolean holding;
+
+        private Ticket(final long stride, final long sequence, final Condition turn) {
+            this.stride = stride;
+            this.sequence = sequence;
+            this.turn = turn;
+        }
+    }
+}
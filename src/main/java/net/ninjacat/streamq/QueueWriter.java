@@ -0,0 +1,128 @@
+/*
+ * streamq: QueueWriter.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes elements of a single stream into the queue, keeping track of the stream lifecycle.
+ * <p>
+ * If queue is a bounded {@link BlockingQueue} writer waits for free space in it. When timeout is set, writer waits for
+ * no longer than that, so that consumer which stops reading the queue will not leave the producer blocked forever,
+ * holding its thread and whatever resources the stream holds. Stream is still ended for a consumer which comes back
+ * late: if there is no room for end-of-stream marker, unread elements are dropped to make room for it.
+ *
+ * @param <T> Type of elements in the queue
+ */
+class QueueWriter<T> {
+    /**
+     * Timeout value to wait for free space in the queue indefinitely
+     */
+    static final long NO_TIMEOUT = 0;
+
+    private final Queue<T> queue;
+    private final long streamId;
+    private final long timeoutNanos;
+    private final StreamEvents.StreamSpan streamSpan;
+    private long elements;
+    private boolean abandoned;
+
+    /**
+     * @param queue        Queue to write to
+     * @param timeoutNanos Maximum time to wait for free space in the queue, or {@link #NO_TIMEOUT}
+     */
+    QueueWriter(final Queue<T> queue, final long timeoutNanos) {
+        if (timeoutNanos < 0) {
+            throw new IllegalArgumentException("timeout cannot be negative");
+        }
+        this.queue = queue;
+        this.timeoutNanos = timeoutNanos;
+        this.streamId = StreamEvents.streamIdOf(queue);
+        this.streamSpan = StreamEvents.streamStarted(streamId);
+    }
+
+    void write(final T item) {
+        enqueue(item);
+        elements++;
+    }
+
+    /**
+     * Puts end-of-stream marker into the queue. If writer has given up waiting for the consumer, marker replaces
+     * unread elements when there is no room for it.
+     *
+     * @param endOfStream End-of-stream marker
+     */
+    void finish(final T endOfStream) {
+        try {
+            if (!abandoned) {
+                enqueue(endOfStream);
+            }
+        } finally {
+            try {
+                if (abandoned) {
+                    forceEndOfStream(endOfStream);
+                }
+            } finally {
+                streamSpan.complete(elements);
+            }
+        }
+    }
+
+    /**
+     * Called before producer starts waiting for free space in the queue
+     */
+    void beforeWaiting() {
+    }
+
+    private void enqueue(final T item) {
+        if (!(queue instanceof BlockingQueue)) {
+            queue.add(item);
+            return;
+        }
+        final BlockingQueue<T> blockingQueue = (BlockingQueue<T>) queue;
+        if (blockingQueue.offer(item)) {
+            return;
+        }
+        beforeWaiting();
+        final StreamEvents.Span stall = StreamEvents.producerBlocked(streamId);
+        try {
+            if (timeoutNanos == NO_TIMEOUT) {
+                blockingQueue.put(item);
+            } else if (!blockingQueue.offer(item, timeoutNanos, TimeUnit.NANOSECONDS)) {
+                abandoned = true;
+                throw new IllegalStateException("Timed out waiting for space in the queue");
+            }
+        } catch (final InterruptedException e) {
+            abandoned = true;
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for space in the queue", e);
+        } finally {
+            stall.complete();
+        }
+    }
+
+    private void forceEndOfStream(final T endOfStream) {
+        if (!queue.offer(endOfStream)) {
+            queue.clear();
+            queue.offer(endOfStream);
+        }
+    }
+}
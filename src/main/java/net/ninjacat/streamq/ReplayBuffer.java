@@ -0,0 +1,138 @@
+/*
+ * streamq: ReplayBuffer.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Bounded buffer of the most recent elements sent to a client. Oldest elements are discarded when buffer is full.
+ * <p>
+ * Each connection of a resumed stream records into a new generation of the buffer. Superseded generation ignores
+ * elements still sent to the previous connection, so that outputs of the two are not interleaved.
+ *
+ * @param <T> Type of elements in the stream
+ * @param <P> Type of element position
+ */
+final class ReplayBuffer<T, P> {
+    private final int capacity;
+    private final Function<? super T, ? extends P> positionOf;
+    private final ArrayDeque<T> elements;
+    private boolean complete;
+    private boolean seeded;
+    private boolean superseded;
+    private volatile long lastAccess;
+
+    ReplayBuffer(final int capacity, final Function<? super T, ? extends P> positionOf) {
+        this.capacity = capacity;
+        this.positionOf = positionOf;
+        this.elements = new ArrayDeque<>(Math.min(capacity, 1024));
+        this.lastAccess = System.nanoTime();
+    }
+
+    /**
+     * Supersedes this buffer with a new one, seeded with its elements, so that replayed elements can be resumed from
+     * again. Elements recorded afterwards by the previous connection are ignored.
+     *
+     * @return New generation of the buffer
+     */
+    synchronized ReplayBuffer<T, P> nextGeneration() {
+        superseded = true;
+        final ReplayBuffer<T, P> next = new ReplayBuffer<>(capacity, positionOf);
+        next.elements.addAll(elements);
+        next.seeded = !elements.isEmpty();
+        return next;
+    }
+
+    synchronized void record(final T element) {
+        if (superseded) {
+            return;
+        }
+        if (seeded) {
+            dropSeedFrom(positionOf.apply(element));
+        }
+        if (elements.size() == capacity) {
+            elements.pollFirst();
+        }
+        elements.addLast(element);
+        complete = false;
+        lastAccess = System.nanoTime();
+    }
+
+    synchronized void markComplete() {
+        if (superseded) {
+            return;
+        }
+        complete = true;
+        lastAccess = System.nanoTime();
+    }
+
+    /**
+     * Finds how to resume the stream for a client which received all elements up to the given position. Replay,
+     * completeness and restart position are all taken under the same lock, so that elements still being recorded
+     * by the original connection are either replayed or produced again by the restarted source.
+     *
+     * @param position Position of the last element received by the client
+     * @return {@link Resumption} or {@code null} if position is no longer in the buffer
+     */
+    synchronized Resumption<T, P> resumeAfter(final P position) {
+        lastAccess = System.nanoTime();
+        final List<T> replay = new ArrayList<>();
+        final Iterator<T> newestFirst = elements.descendingIterator();
+        while (newestFirst.hasNext()) {
+            final T element = newestFirst.next();
+            if (Objects.equals(positionOf.apply(element), position)) {
+                Collections.reverse(replay);
+                if (complete) {
+                    return new Resumption<>(replay, false, null);
+                }
+                final P restartAfter = replay.isEmpty() ? position : positionOf.apply(replay.get(replay.size() - 1));
+                return new Resumption<>(replay, true, restartAfter);
+            }
+            replay.add(element);
+        }
+        return null;
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Seed may contain elements recorded by the previous connection after the client position. Restarted source
+     * produces them again, so they are dropped when its first element is recorded.
+     */
+    private void dropSeedFrom(final P position) {
+        seeded = false;
+        for (final T element : elements) {
+            if (Objects.equals(positionOf.apply(element), position)) {
+                T dropped;
+                do {
+                    dropped = elements.pollLast();
+                } while (!Objects.equals(positionOf.apply(dropped), position));
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * streamq: ResumableStreams.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Keeps short-lived buffers of recent output of streams, so that reconnecting clients can resume where they stopped.
+ * <p>
+ * Each element has a resumable position, such as a key used for keyset pagination or a sequence number. Client
+ * reconnecting with the position of the last received element gets remaining buffered elements, and, if the stream
+ * was not complete, position to restart the source from.
+ * <p>
+ * Buffers not accessed for longer than retention period are discarded.
+ *
+ * @param <T> Type of elements in the streams
+ * @param <P> Type of element position
+ */
+public final class ResumableStreams<T, P> {
+    private final Function<? super T, ? extends P> positionOf;
+    private final int bufferSize;
+    private final long retentionNanos;
+    private final Map<String, ReplayBuffer<T, P>> buffers;
+
+    private ResumableStreams(final Function<? super T, ? extends P> positionOf,
+                             final int bufferSize,
+                             final Duration retention) {
+        this.positionOf = positionOf;
+        this.bufferSize = bufferSize;
+        this.retentionNanos = retention.toNanos();
+        this.buffers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates registry of resumable streams
+     *
+     * @param positionOf Function returning resumable position of an element
+     * @param bufferSize Maximum number of recent elements kept for each stream
+     * @param retention  Time to keep buffer after last access
+     * @param <T>        Type of elements in the streams
+     * @param <P>        Type of element position
+     * @return new {@link ResumableStreams}
+     */
+    public static <T, P> ResumableStreams<T, P> of(final Function<? super T, ? extends P> positionOf,
+                                                   final int bufferSize,
+                                                   final Duration retention) {
+        if (positionOf == null) throw new IllegalArgumentException("position function cannot be null");
+        if (bufferSize <= 0) throw new IllegalArgumentException("buffer size must be greater than zero");
+        if (retention == null || retention.isNegative()) {
+            throw new IllegalArgumentException("retention cannot be negative");
+        }
+        return new ResumableStreams<>(positionOf, bufferSize, retention);
+    }
+
+    /**
+     * Gets resumable position of the element, e.g. to be sent to the client as an event ID
+     *
+     * @param element Element of the stream
+     * @return Position of the element
+     */
+    public P positionOf(final T element) {
+        return positionOf.apply(element);
+    }
+
+    /**
+     * Wraps stream output, recording every element passed to the client in the retention buffer of the stream.
+     * <p>
+     * Output of a resumed stream must be tracked with the same stream ID. Each call starts a new generation of the
+     * retention buffer, and output of the previous connection of the stream is no longer recorded.
+     *
+     * @param streamId ID of the stream
+     * @param output   Elements sent to the client, usually a {@link MarkedQueue}
+     * @return Iterable over the same elements
+     */
+    public Iterable<T> track(final String streamId, final Iterable<T> output) {
+        evictExpired();
+        final ReplayBuffer<T, P> buffer = buffers.compute(streamId, (id, current) -> current == null
+                ? new ReplayBuffer<>(bufferSize, positionOf)
+                : current.nextGeneration());
+        return () -> new TrackingIterator<>(output.iterator(), buffer);
+    }
+
+    /**
+     * Finds how to resume the stream for a client which received all elements up to the given position.
+     * <p>
+     * When the position is still in the buffer, newer buffered elements are replayed and source only needs to be
+     * restarted after the newest of them, if the stream was not complete yet. Otherwise source must be restarted
+     * after the client's position.
+     *
+     * @param streamId     ID of the stream
+     * @param lastPosition Position of the last element received by the client, {@code null} if none were received
+     * @return {@link Resumption} describing how to continue the stream
+     */
+    public Resumption<T, P> resume(final String streamId, final P lastPosition) {
+        evictExpired();
+        final ReplayBuffer<T, P> buffer = buffers.get(streamId);
+        final Resumption<T, P> buffered = buffer == null || lastPosition == null
+                ? null
+                : buffer.resumeAfter(lastPosition);
+        if (buffered == null) {
+            return new Resumption<>(Collections.emptyList(), true, lastPosition);
+        }
+        return buffered;
+    }
+
+    /**
+     * Discards retention buffer of the stream
+     *
+     * @param streamId ID of the stream
+     */
+    public void discard(final String streamId) {
+        buffers.remove(streamId);
+    }
+
+    private void evictExpired() {
+        final long now = System.nanoTime();
+        buffers.values().removeIf(buffer -> now - buffer.getLastAccess() > retentionNanos);
+    }
+
+    private static final class TrackingIterator<T> implements Iterator<T> {
+        private final Iterator<T> output;
+        private final ReplayBuffer<T, ?> buffer;
+
+        TrackingIterator(final Iterator<T> output, final ReplayBuffer<T, ?> buffer) {
+            this.output = output;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean hasNext() {
+            final boolean hasNext = output.hasNext();
+            if (!hasNext) {
+                buffer.markComplete();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            final T element = output.next();
+            buffer.record(element);
+            return element;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * streamq: Resumption.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.util.List;
+
+/**
+ * Instructions for resuming a stream after client reconnects.
+ * <p>
+ * Client must first receive all the elements from {@link #getReplay()}. Then, if {@link #isRestartRequired()},
+ * source must be restarted to produce elements following {@link #getRestartAfter()} position.
+ *
+ * @param <T> Type of elements in the stream
+ * @param <P> Type of element position
+ */
+public final class Resumption<T, P> {
+    private final List<T> replay;
+    private final boolean restartRequired;
+    private final P restartAfter;
+
+    Resumption(final List<T> replay, final boolean restartRequired, final P restartAfter) {
+        this.replay = replay;
+        this.restartRequired = restartRequired;
+        this.restartAfter = restartAfter;
+    }
+
+    /**
+     * @return Elements from the retention buffer which were not received by the client
+     */
+    public List<T> getReplay() {
+        return replay;
+    }
+
+    /**
+     * @return {@code true} if source must be restarted after replaying buffered elements, {@code false} if
+     * original stream was already complete
+     */
+    public boolean isRestartRequired() {
+        return restartRequired;
+    }
+
+    /**
+     * @return Position after which restarted source must continue, {@code null} to restart from the beginning
+     */
+    public P getRestartAfter() {
+        return restartAfter;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * streamq: ScheduledQueueWriter.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.util.Queue;
+
+/**
+ * {@link QueueWriter} which writes elements only while holding a slot of {@link ProducerScheduler}.
+ * <p>
+ * Slot is yielded after scheduler's quota of elements or time slice, and also while waiting for free space in the
+ * queue, so that producer of a slow consumer doesn't hold a slot it cannot use.
+ *
+ * @param <T> Type of elements in the queue
+ */
+final class ScheduledQueueWriter<T> extends QueueWriter<T> {
+    private final ProducerScheduler scheduler;
+    private final ProducerScheduler.Ticket ticket;
+    private boolean holding;
+    private int sliceElements;
+    private long sliceStart;
+
+    ScheduledQueueWriter(final Queue<T> queue, final long timeoutNanos,
+                         final ProducerScheduler scheduler, final StreamPriority priority) {
+        super(queue, timeoutNanos);
+        this.scheduler = scheduler;
+        this.ticket = scheduler.register(priority);
+    }
+
+    @Override
+    void write(final T item) {
+        if (!holding) {
+            acquire();
+        }
+        super.write(item);
+        if (!holding) {
+            // slot was released while waiting for the consumer, next element will acquire it again
+            return;
+        }
+        sliceElements++;
+        if (sliceElements >= scheduler.getQuota() || System.nanoTime() - sliceStart >= scheduler.getTimeSliceNanos()) {
+            nextSlice();
+        }
+    }
+
+    @Override
+    void finish(final T endOfStream) {
+        yieldSlot();
+        super.finish(endOfStream);
+    }
+
+    @Override
+    void beforeWaiting() {
+        yieldSlot();
+    }
+
+    private void acquire() {
+        try {
+            scheduler.acquire(ticket);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for producer slot", e);
+        }
+        holding = true;
+        startSlice();
+    }
+
+    /**
+     * Lets producers which have received less service run before starting the next slice
+     */
+    private void nextSlice() {
+        try {
+            scheduler.yieldSlot(ticket);
+        } catch (final InterruptedException e) {
+            yieldSlot();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for producer slot", e);
+        }
+        startSlice();
+    }
+
+    private void startSlice() {
+        sliceElements = 0;
+        sliceStart = System.nanoTime();
+    }
+
+    /**
+     * Releases the slot, paying only for the part of the slice which was used
+     */
+    private void yieldSlot() {
+        if (holding) {
+            holding = false;
+            scheduler.release(ticket, sliceElements, System.nanoTime() - sliceStart);
+        }
+    }
+}
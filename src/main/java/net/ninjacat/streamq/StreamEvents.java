@@ -0,0 +1,105 @@
+/*
+ * streamq: StreamEvents.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entry point for StreamQ diagnostic events.
+ * <p>
+ * Events are recorded with JDK Flight Recorder when it is available in the running JVM, otherwise all the calls
+ * are no-op. Duration events have thresholds, so only long stalls are actually recorded.
+ */
+final class StreamEvents {
+    private static final AtomicLong STREAM_IDS = new AtomicLong();
+    private static final boolean ENABLED = isFlightRecorderAvailable();
+    private static final Span NO_SPAN = () -> {
+    };
+    private static final StreamSpan NO_STREAM_SPAN = elements -> {
+    };
+
+    private StreamEvents() {
+    }
+
+    /**
+     * @return New unique stream ID
+     */
+    static long nextStreamId() {
+        return STREAM_IDS.incrementAndGet();
+    }
+
+    /**
+     * Finds stream ID of the queue. Queues not created by StreamQ are identified by their identity hash code
+     *
+     * @param queue Queue to identify
+     * @return Stream ID
+     */
+    static long streamIdOf(final Object queue) {
+        return queue instanceof MarkedQueue
+                ? ((MarkedQueue<?>) queue).getStreamId()
+                : System.identityHashCode(queue);
+    }
+
+    /**
+     * Records start of the stream
+     *
+     * @return Span to be ended with total number of elements in the stream
+     */
+    static StreamSpan streamStarted(final long streamId) {
+        return ENABLED ? JfrStreamEvents.streamStarted(streamId) : NO_STREAM_SPAN;
+    }
+
+    /**
+     * @return Span of producer waiting for free space in the queue
+     */
+    static Span producerBlocked(final long streamId) {
+        return ENABLED ? JfrStreamEvents.producerBlocked(streamId) : NO_SPAN;
+    }
+
+    /**
+     * @return Span of consumer waiting for elements in the queue
+     */
+    static Span consumerBlocked(final long streamId) {
+        return ENABLED ? JfrStreamEvents.consumerBlocked(streamId) : NO_SPAN;
+    }
+
+    /**
+     * @return Span of a worker processing a batch of elements taken from the queue
+     */
+    static Span batchTaken(final long streamId, final int batchSize) {
+        return ENABLED ? JfrStreamEvents.batchTaken(streamId, batchSize) : NO_SPAN;
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    interface Span {
+        void complete();
+    }
+
+    interface StreamSpan {
+        void complete(long elements);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * streamq: StreamPriority.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+/**
+ * Priority classes of streams scheduled by {@link ProducerScheduler}. Stream gets share of production slots
+ * proportional to the weight of its class.
+ */
+public enum StreamPriority {
+    /**
+     * Small streams where client waits for the response, e.g. pages of a UI
+     */
+    INTERACTIVE(16),
+    NORMAL(4),
+    /**
+     * Large exports
+     */
+    BULK(1);
+
+    private final int weight;
+
+    StreamPriority(final int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -18,6 +18,7 @@
 
 package net.ninjacat.streamq;
 
+import java.time.Duration;
 import java.util.Queue;
 import java.util.stream.Stream;
 
@@ -40,6 +41,16 @@ public final class StreamQ {
         return MarkedQ.withMarker(marker).build();
     }
 
+    /**
+     * Creates a {@link ByteChunkQueue} passing chunks of binary data in direct buffers from the pool.
+     *
+     * @param pool Pool of direct buffers. May be shared between several queues
+     * @return new {@link ByteChunkQueue}
+     */
+    public static ByteChunkQueue byteChunkQueue(final ByteBufferPool pool) {
+        return new ByteChunkQueue(pool);
+    }
+
     /**
      * Creates a reader to read from a {@link Stream} of objects into a queue.
      * <p>
@@ -70,7 +81,7 @@ public final class StreamQ {
          * @return StreamReader with configured end-of-stream marker
          */
         public MarkedStreamReader<T> withMarker(final T endOfStream) {
-            return new MarkedStreamReader<T>(stream, endOfStream);
+            return new MarkedStreamReader<T>(stream, endOfStream, QueueWriter.NO_TIMEOUT);
         }
     }
 
@@ -82,28 +93,94 @@ public final class StreamQ {
     public static final class MarkedStreamReader<T> {
         private final Stream<T> stream;
         private final T endOfStream;
+        private final long timeoutNanos;
 
-        MarkedStreamReader(final Stream<T> stream, final T endOfStream) {
+        MarkedStreamReader(final Stream<T> stream, final T endOfStream, final long timeoutNanos) {
             this.stream = stream;
             this.endOfStream = endOfStream;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        /**
+         * Sets maximum time to wait for free space in a bounded queue. When it runs out, consumer is considered gone:
+         * reading stops with {@link IllegalStateException}, the stream is closed and end-of-stream marker is put into
+         * the queue, replacing unread elements if there is no room for it. By default producer waits indefinitely.
+         *
+         * @param timeout Maximum time to wait for the consumer
+         * @return StreamReader with configured timeout
+         */
+        public MarkedStreamReader<T> withTimeout(final Duration timeout) {
+            if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("timeout must be greater than zero");
+            }
+            return new MarkedStreamReader<T>(stream, endOfStream, timeout.toNanos());
         }
 
         /**
          * Sets the queue to receive elements from the stream. This method will start reading from the
          * stream until it is exhausted and then close it with {@link Stream#close()} method.
+         * <p>
+         * If queue is a bounded {@link java.util.concurrent.BlockingQueue} this method will wait for free space in the queue,
+         * but not longer than timeout set with {@link #withTimeout(Duration)}.
+         *
+         * @param queue Queue to accept elements from the stream
+         * @throws IllegalStateException if consumer didn't free space in the queue within timeout
+         */
+        public void into(final Queue<T> queue) {
+            streamToQueue(stream, new QueueWriter<>(queue, timeoutNanos), endOfStream);
+        }
+
+        /**
+         * Makes reading from the stream share production slots with other streams fairly.
+         *
+         * @param scheduler Scheduler of producers
+         * @param priority  Priority class of this stream
+         * @return Continuation of fluent stream-to-queue builder
+         */
+        public ScheduledStreamReader<T> scheduledBy(final ProducerScheduler scheduler, final StreamPriority priority) {
+            return new ScheduledStreamReader<>(stream, endOfStream, timeoutNanos, scheduler, priority);
+        }
+    }
+
+    /**
+     * Continuation of fluent stream-to-queue builder for streams scheduled by {@link ProducerScheduler}
+     *
+     * @param <T> Type of objects in the stream
+     */
+    public static final class ScheduledStreamReader<T> {
+        private final Stream<T> stream;
+        private final T endOfStream;
+        private final long timeoutNanos;
+        private final ProducerScheduler scheduler;
+        private final StreamPriority priority;
+
+        ScheduledStreamReader(final Stream<T> stream, final T endOfStream, final long timeoutNanos,
+                              final ProducerScheduler scheduler, final StreamPriority priority) {
+            this.stream = stream;
+            this.endOfStream = endOfStream;
+            this.timeoutNanos = timeoutNanos;
+            this.scheduler = scheduler;
+            this.priority = priority;
+        }
+
+        /**
+         * Sets the queue to receive elements from the stream. This method will read from the stream while holding
+         * a slot of the scheduler, yielding it after every quota of elements or time slice, until the stream is
+         * exhausted and then close it with {@link Stream#close()} method.
          *
          * @param queue Queue to accept elements from the stream
+         * @throws IllegalStateException if consumer didn't free space in the queue within timeout
          */
         public void into(final Queue<T> queue) {
-            streamToQueue(stream, queue, endOfStream);
+            streamToQueue(stream, new ScheduledQueueWriter<>(queue, timeoutNanos, scheduler, priority), endOfStream);
         }
     }
 
-    private static <T> void streamToQueue(final Stream<T> stream, final Queue<T> queue, final T endOfStream) {
+    private static <T> void streamToQueue(final Stream<T> stream, final QueueWriter<T> writer, final T endOfStream) {
         try (final Stream<T> dataStream = stream) {
-            dataStream.forEach(queue::add);
+            dataStream.forEach(writer::write);
         } finally {
-            queue.add(endOfStream);
+            writer.finish(endOfStream);
         }
     }
 }
@@ -0,0 +1,359 @@
+/*
+ * streamq: StripedMarkedQueue.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implementation of {@link MarkedQueue} for many concurrent producers.
+ * <p>
+ * This implementation consists of several independent lanes, each one a LinkedBlockingQueue. Each producer thread
+ * always puts elements into the same lane, so producers don't contend on a single lock and elements of a single
+ * producer keep their order. Consumers take elements from lanes in round-robin order.
+ * <p>
+ * End-of-stream marker is returned to the consumer only after all the lanes are empty, so elements put by other
+ * producers before the marker are not lost.
+ * <p>
+ * Capacity is split evenly between the lanes, so a single producer can only fill its own share of the queue. This
+ * queue is meant for many producers feeding one stream, a single producer is better served by
+ * {@link LinkedMarkedQueue}.
+ *
+ * @param <E> Type of elements in the Queue
+ */
+public final class StripedMarkedQueue<E> extends AbstractQueue<E> implements MarkedQueue<E> {
+    private final E marker;
+    private final long streamId = StreamEvents.nextStreamId();
+    private final List<LinkedBlockingQueue<E>> lanes;
+    private final AtomicInteger nextLane;
+    private final AtomicBoolean markerTaken;
+    private final AtomicInteger waitingConsumers;
+    private final ReentrantLock takeLock;
+    private final Condition notEmpty;
+
+    public StripedMarkedQueue(final int lanes, final E marker) {
+        this(lanes, Integer.MAX_VALUE, marker);
+    }
+
+    /**
+     * @param lanes    Number of lanes
+     * @param capacity Total capacity of the queue, split evenly between the lanes. Must not be less than number
+     *                 of lanes
+     * @param marker   Marker object indicating end of queue
+     */
+    public StripedMarkedQueue(final int lanes, final int capacity, final E marker) {
+        if (marker == null) {
+            throw new IllegalArgumentException("marker cannot be null");
+        }
+        if (lanes <= 0) {
+            throw new IllegalArgumentException("number of lanes must be greater than zero");
+        }
+        if (capacity < lanes) {
+            throw new IllegalArgumentException("capacity cannot be less than number of lanes");
+        }
+        this.marker = marker;
+        this.lanes = new ArrayList<>(lanes);
+        final int laneCapacity = capacity / lanes;
+        for (int i = 0; i < lanes; i++) {
+            this.lanes.add(new LinkedBlockingQueue<>(laneCapacity));
+        }
+        this.nextLane = new AtomicInteger();
+        this.markerTaken = new AtomicBoolean();
+        this.waitingConsumers = new AtomicInteger();
+        this.takeLock = new ReentrantLock();
+        this.notEmpty = takeLock.newCondition();
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        final boolean added = producerLane().offer(e);
+        if (added) {
+            signalNotEmpty();
+        }
+        return added;
+    }
+
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit) throws InterruptedException {
+        final boolean added = producerLane().offer(e, timeout, unit);
+        if (added) {
+            signalNotEmpty();
+        }
+        return added;
+    }
+
+    @Override
+    public void put(final E e) throws InterruptedException {
+        producerLane().put(e);
+        signalNotEmpty();
+    }
+
+    @Override
+    public E poll() {
+        final E element = pollLanes();
+        return element != null ? element : pollMarker();
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        final E element = poll();
+        if (element != null) {
+            return element;
+        }
+        takeLock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            E taken;
+            while ((taken = poll()) == null) {
+                notEmpty.await();
+            }
+            return taken;
+        } finally {
+            waitingConsumers.decrementAndGet();
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final E element = poll();
+        if (element != null) {
+            return element;
+        }
+        long nanos = unit.toNanos(timeout);
+        takeLock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            E taken;
+            while ((taken = poll()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return taken;
+        } finally {
+            waitingConsumers.decrementAndGet();
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        for (final LinkedBlockingQueue<E> lane : lanes) {
+            final E element = lane.peek();
+            if (element != null && element != marker) {
+                return element;
+            }
+        }
+        return markerTaken.get() || lanes.stream().anyMatch(lane -> lane.peek() == marker) ? marker : null;
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Drains lanes in round-robin order, taking as many elements as possible from each lane at once
+     */
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException("cannot drain queue to itself");
+        }
+        final List<E> batch = new ArrayList<>();
+        final int start = nextLane.getAndIncrement();
+        int drained = 0;
+        for (int i = 0; i < lanes.size() && drained < maxElements; i++) {
+            lane(start + i).drainTo(batch, maxElements - drained);
+            for (final E element : batch) {
+                if (element == marker) {
+                    holdMarker();
+                } else {
+                    c.add(element);
+                    drained++;
+                }
+            }
+            batch.clear();
+        }
+        if (drained < maxElements) {
+            final E pending = pollMarker();
+            if (pending != null) {
+                c.add(pending);
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    @Override
+    public int size() {
+        int size = markerTaken.get() ? 1 : 0;
+        for (final LinkedBlockingQueue<E> lane : lanes) {
+            size += lane.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        long remaining = 0;
+        for (final LinkedBlockingQueue<E> lane : lanes) {
+            remaining += lane.remainingCapacity();
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return lanes.stream().anyMatch(lane -> lane.contains(o));
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        return lanes.stream().anyMatch(lane -> lane.remove(o));
+    }
+
+    @Override
+    public Object[] toArray() {
+        return lanes.stream().flatMap(Collection::stream).toArray();
+    }
+
+    @Override
+    @SuppressWarnings("SuspiciousToArrayCall")
+    public <T> T[] toArray(final T[] a) {
+        final List<E> elements = new ArrayList<>();
+        lanes.forEach(elements::addAll);
+        return elements.toArray(a);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return MarkedQueueIterator.of(this, marker);
+    }
+
+    @Override
+    public Stream<E> stream() {
+        return StreamSupport.stream(MarkedQueueIterable.of(this, marker).spliterator(), false);
+    }
+
+    @Override
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(MarkedQueueIterable.of(this, marker).spliterator(), true);
+    }
+
+    @Override
+    public E getMarker() {
+        return marker;
+    }
+
+    @Override
+    public long getStreamId() {
+        return streamId;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StripedMarkedQueue)) return false;
+        final StripedMarkedQueue<?> markedQueue = (StripedMarkedQueue<?>) o;
+        return Objects.equals(marker, markedQueue.marker);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(marker);
+    }
+
+    private LinkedBlockingQueue<E> producerLane() {
+        return lane((int) Thread.currentThread().getId());
+    }
+
+    private LinkedBlockingQueue<E> lane(final int index) {
+        return lanes.get(Math.floorMod(index, lanes.size()));
+    }
+
+    /**
+     * Takes next element from lanes in round-robin order. Marker found in a lane is held back until all the
+     * lanes are empty.
+     */
+    private E pollLanes() {
+        final int start = nextLane.getAndIncrement();
+        for (int i = 0; i < lanes.size(); i++) {
+            final E element = lane(start + i).poll();
+            if (element == marker) {
+                holdMarker();
+            } else if (element != null) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps marker taken from a lane until all the lanes are empty. Waiting consumer is woken up, as it might
+     * have missed the marker while it was being moved out of the lane.
+     */
+    private void holdMarker() {
+        markerTaken.set(true);
+        signalNotEmpty();
+    }
+
+    private E pollMarker() {
+        if (markerTaken.get() && lanes.stream().allMatch(LinkedBlockingQueue::isEmpty)
+                && markerTaken.compareAndSet(true, false)) {
+            return marker;
+        }
+        return null;
+    }
+
+    /**
+     * Wakes up waiting consumer. Lock is only taken when there are consumers waiting, so that producers don't
+     * contend on it while queue is being drained.
+     */
+    private void signalNotEmpty() {
+        if (waitingConsumers.get() > 0) {
+            takeLock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                takeLock.unlock();
+            }
+        }
+    }
+}
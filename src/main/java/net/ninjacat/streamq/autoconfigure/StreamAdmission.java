@@ -0,0 +1,124 @@
+/*
+ * streamq: StreamAdmission.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.autoconfigure;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits number of concurrently running stream producers.
+ * <p>
+ * Producer started with {@link #execute(Runnable)} occupies a slot until it finishes. Producer reading with
+ * {@link net.ninjacat.streamq.StreamQ} should set a timeout, so that a stream abandoned by its consumer frees the slot
+ * once the timeout runs out. When all slots are taken, up to
+ * {@code streamq.admission.max-waiting-streams} callers wait for a free slot for at most
+ * {@code streamq.admission.wait-timeout}, all others are rejected with {@link StreamRejectedException} immediately.
+ * <p>
+ * New producers are rejected once application context starts shutting down, while already running ones are allowed
+ * to finish.
+ */
+public class StreamAdmission implements DisposableBean {
+    private final TaskExecutor executor;
+    private final StreamQProperties.Admission properties;
+    private final Semaphore slots;
+    private final AtomicInteger waiting;
+    private volatile boolean closed;
+
+    public StreamAdmission(final TaskExecutor executor, final StreamQProperties.Admission properties) {
+        if (properties.getMaxActiveStreams() <= 0) {
+            throw new IllegalArgumentException("max-active-streams must be greater than zero");
+        }
+        this.executor = executor;
+        this.properties = properties;
+        this.slots = new Semaphore(properties.getMaxActiveStreams(), true);
+        this.waiting = new AtomicInteger();
+    }
+
+    /**
+     * Runs stream producer on the StreamQ executor, if there is a free slot for it.
+     *
+     * @param producer Producer to run
+     * @throws StreamRejectedException if there is no free slot for the producer
+     */
+    public void execute(final Runnable producer) {
+        acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    producer.run();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (final RuntimeException e) {
+            slots.release();
+            if (e instanceof TaskRejectedException) {
+                throw new StreamRejectedException("StreamQ executor is saturated", e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return Number of currently running producers
+     */
+    public int getActiveStreams() {
+        return properties.getMaxActiveStreams() - slots.availablePermits();
+    }
+
+    /**
+     * @return Number of callers waiting for a free slot
+     */
+    public int getWaitingStreams() {
+        return waiting.get();
+    }
+
+    @Override
+    public void destroy() {
+        closed = true;
+    }
+
+    private void acquire() {
+        if (closed) {
+            throw new StreamRejectedException("Application is shutting down");
+        }
+        if (slots.tryAcquire()) {
+            return;
+        }
+        if (waiting.incrementAndGet() > properties.getMaxWaitingStreams()) {
+            waiting.decrementAndGet();
+            throw new StreamRejectedException("Too many active streams");
+        }
+        try {
+            if (!slots.tryAcquire(properties.getWaitTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new StreamRejectedException("Timed out waiting for a free stream slot");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamRejectedException("Interrupted while waiting for a free stream slot", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * streamq: StreamQAutoConfiguration.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.autoconfigure;
+
+import net.ninjacat.streamq.ProducerScheduler;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+
+/**
+ * Spring Boot auto-configuration for StreamQ.
+ * <p>
+ * Creates bounded executor for stream producers, {@link StreamAdmission} limiting number of concurrently
+ * active streams, {@link ProducerScheduler} sharing production slots fairly between streams and {@link StreamQueues}
+ * factory of queues configured with {@code streamq.*} properties.
+ * <p>
+ * Configured after {@link TaskExecutionAutoConfiguration}, so that Spring Boot still creates its own
+ * {@code applicationTaskExecutor} for Web MVC async support.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "streamq", name = "enabled", matchIfMissing = true)
+@EnableConfigurationProperties(StreamQProperties.class)
+@AutoConfigureAfter(TaskExecutionAutoConfiguration.class)
+public class StreamQAutoConfiguration {
+
+    public static final String EXECUTOR_BEAN_NAME = "streamqTaskExecutor";
+
+    @Bean(name = EXECUTOR_BEAN_NAME)
+    @ConditionalOnMissingBean(name = EXECUTOR_BEAN_NAME)
+    public ThreadPoolTaskExecutor streamqTaskExecutor(final StreamQProperties properties) {
+        final StreamQProperties.Executor config = properties.getExecutor();
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(config.getCoreSize());
+        executor.setMaxPoolSize(maxPoolSize(config));
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix(config.getThreadNamePrefix());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(toSecondsRoundingUp(config.getShutdownTimeout()));
+        return executor;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public StreamAdmission streamAdmission(@Qualifier(EXECUTOR_BEAN_NAME) final TaskExecutor executor,
+                                           final StreamQProperties properties) {
+        return new StreamAdmission(executor, properties.getAdmission());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ProducerScheduler producerScheduler(final StreamQProperties properties) {
+        final StreamQProperties.Scheduler config = properties.getScheduler();
+        final int slots = config.getSlots() != null
+                ? config.getSlots()
+                : Math.max(1, maxPoolSize(properties.getExecutor()) / 2);
+        return new ProducerScheduler(slots, config.getQuota(), config.getTimeSlice());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public StreamQueues streamQueues(final StreamQProperties properties) {
+        return new StreamQueues(properties.getQueue());
+    }
+
+    private static int maxPoolSize(final StreamQProperties.Executor config) {
+        return Math.max(config.getCoreSize(), config.getMaxSize());
+    }
+
+    private static int toSecondsRoundingUp(final Duration duration) {
+        return (int) (duration.getNano() > 0 ? duration.getSeconds() + 1 : duration.getSeconds());
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * streamq: StreamQProperties.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.autoconfigure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for StreamQ, bound to {@code streamq.*}
+ */
+@ConfigurationProperties(prefix = "streamq")
+public class StreamQProperties {
+
+    /**
+     * Whether StreamQ auto-configuration is enabled
+     */
+    private boolean enabled = true;
+
+    private final Queue queue = new Queue();
+    private final Executor executor = new Executor();
+    private final Admission admission = new Admission();
+    private final Scheduler scheduler = new Scheduler();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Queue getQueue() {
+        return queue;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public enum QueueType {
+        LINKED,
+        ARRAY
+    }
+
+    /**
+     * Defaults for queues created with {@link StreamQueues}
+     */
+    public static class Queue {
+        /**
+         * Type of single-producer queues
+         */
+        private QueueType type = QueueType.LINKED;
+        /**
+         * Maximum number of elements in a queue. Producer will wait for the consumer when queue is full
+         */
+        private int capacity = 10_000;
+        /**
+         * Maximum number of elements each worker takes from the queue at once when consuming in parallel
+         */
+        private int batchSize = 100;
+        /**
+         * Number of lanes of fan-in queues, which are split into lanes for many concurrent producers. Must not exceed
+         * capacity
+         */
+        private int lanes = Runtime.getRuntime().availableProcessors();
+
+        public QueueType getType() {
+            return type;
+        }
+
+        public void setType(final QueueType type) {
+            this.type = type;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(final int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getLanes() {
+            return lanes;
+        }
+
+        public void setLanes(final int lanes) {
+            this.lanes = lanes;
+        }
+    }
+
+    /**
+     * Executor running stream producers
+     */
+    public static class Executor {
+        /**
+         * Number of threads kept in the pool
+         */
+        private int coreSize = Runtime.getRuntime().availableProcessors();
+        /**
+         * Maximum number of threads in the pool
+         */
+        private int maxSize = Runtime.getRuntime().availableProcessors();
+        /**
+         * Number of producers waiting for a free thread. Producers are rejected when this queue is full
+         */
+        private int queueCapacity = 100;
+        /**
+         * Time to wait for running producers to finish on shutdown
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+        /**
+         * Prefix for the names of the producer threads
+         */
+        private String threadNamePrefix = "streamq-";
+
+        public int getCoreSize() {
+            return coreSize;
+        }
+
+        public void setCoreSize(final int coreSize) {
+            this.coreSize = coreSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(final int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Duration getShutdownTimeout() {
+            return shutdownTimeout;
+        }
+
+        public void setShutdownTimeout(final Duration shutdownTimeout) {
+            this.shutdownTimeout = shutdownTimeout;
+        }
+
+        public String getThreadNamePrefix() {
+            return threadNamePrefix;
+        }
+
+        public void setThreadNamePrefix(final String threadNamePrefix) {
+            this.threadNamePrefix = threadNamePrefix;
+        }
+    }
+
+    /**
+     * Limits on concurrently active streams
+     */
+    public static class Admission {
+        /**
+         * Maximum number of concurrently running producers
+         */
+        private int maxActiveStreams = Runtime.getRuntime().availableProcessors();
+        /**
+         * Maximum number of requests waiting for a free slot. Zero means requests are rejected immediately
+         */
+        private int maxWaitingStreams = 0;
+        /**
+         * Maximum time a request waits for a free slot before it is rejected
+         */
+        private Duration waitTimeout = Duration.ofSeconds(1);
+
+        public int getMaxActiveStreams() {
+            return maxActiveStreams;
+        }
+
+        public void setMaxActiveStreams(final int maxActiveStreams) {
+            this.maxActiveStreams = maxActiveStreams;
+        }
+
+        public int getMaxWaitingStreams() {
+            return maxWaitingStreams;
+        }
+
+        public void setMaxWaitingStreams(final int maxWaitingStreams) {
+            this.maxWaitingStreams = maxWaitingStreams;
+        }
+
+        public Duration getWaitTimeout() {
+            return waitTimeout;
+        }
+
+        public void setWaitTimeout(final Duration waitTimeout) {
+            this.waitTimeout = waitTimeout;
+        }
+    }
+
+    /**
+     * Fair scheduling of stream producers
+     */
+    public static class Scheduler {
+        /**
+         * Maximum number of producers reading their streams at the same time. Must be less than executor max-size for
+         * priorities to matter, defaults to half of it
+         */
+        private Integer slots;
+        /**
+         * Maximum number of elements producer puts into the queue before yielding its slot
+         */
+        private int quota = 1000;
+        /**
+         * Maximum time producer holds its slot before yielding it
+         */
+        private Duration timeSlice = Duration.ofMillis(10);
+
+        public Integer getSlots() {
+            return slots;
+        }
+
+        public void setSlots(final Integer slots) {
+            this.slots = slots;
+        }
+
+        public int getQuota() {
+            return quota;
+        }
+
+        public void setQuota(final int quota) {
+            this.quota = quota;
+        }
+
+        public Duration getTimeSlice() {
+            return timeSlice;
+        }
+
+        public void setTimeSlice(final Duration timeSlice) {
+            this.timeSlice = timeSlice;
+        }
+    }
+}
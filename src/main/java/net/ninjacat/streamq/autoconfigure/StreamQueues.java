@@ -0,0 +1,88 @@
+/*
+ * streamq: StreamQueues.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.autoconfigure;
+
+import net.ninjacat.streamq.MarkedQ;
+import net.ninjacat.streamq.MarkedQueue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Creates {@link MarkedQueue} instances configured with {@code streamq.queue.*} properties
+ */
+public class StreamQueues {
+    private final StreamQProperties.Queue properties;
+
+    public StreamQueues(final StreamQProperties.Queue properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Creates a new queue of configured type and capacity for a stream with a single producer
+     *
+     * @param marker Marker object indicating end of queue. This marker will be <strong>matched by reference</strong>
+     * @param <T>    Type of elements in the queue
+     * @return new {@link MarkedQueue}
+     */
+    public <T> MarkedQueue<T> create(final T marker) {
+        final MarkedQ<T> builder = MarkedQ.withMarker(marker).withCapacity(properties.getCapacity());
+        switch (properties.getType()) {
+            case ARRAY:
+                return builder.array().build();
+            case LINKED:
+            default:
+                return builder.linked().build();
+        }
+    }
+
+    /**
+     * Creates a new striped queue of configured capacity and number of lanes for a stream fed by many concurrent
+     * producers. Each producer can only use its lane's share of the capacity.
+     *
+     * @param marker Marker object indicating end of queue. This marker will be <strong>matched by reference</strong>
+     * @param <T>    Type of elements in the queue
+     * @return new {@link net.ninjacat.streamq.StripedMarkedQueue}
+     */
+    public <T> MarkedQueue<T> createFanIn(final T marker) {
+        return MarkedQ.withMarker(marker)
+                .withCapacity(properties.getCapacity())
+                .striped(properties.getLanes())
+                .build();
+    }
+
+    /**
+     * Consumes the queue with several workers, taking elements in batches of configured size
+     *
+     * @param queue    Queue to consume
+     * @param executor Executor to run workers on. It must be able to run all the workers concurrently
+     * @param workers  Number of workers
+     * @param sink     Consumer of the elements. Will be called from several threads concurrently
+     * @param <T>      Type of elements in the queue
+     * @return {@link CompletableFuture} which completes when all the workers are done
+     * @see MarkedQueue#consumeInParallel(Executor, int, int, Consumer)
+     */
+    public <T> CompletableFuture<Void> consumeInParallel(final MarkedQueue<T> queue,
+                                                         final Executor executor,
+                                                         final int workers,
+                                                         final Consumer<? super T> sink) {
+        return queue.consumeInParallel(executor, workers, properties.getBatchSize(), sink);
+    }
+}
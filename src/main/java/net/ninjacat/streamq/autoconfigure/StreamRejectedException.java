@@ -0,0 +1,39 @@
+/*
+ * streamq: StreamRejectedException.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.autoconfigure;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a new stream cannot be started because too many streams are already active.
+ * <p>
+ * Results in {@code 503 Service Unavailable} response when not handled by the controller.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class StreamRejectedException extends RuntimeException {
+
+    public StreamRejectedException(final String message) {
+        super(message);
+    }
+
+    public StreamRejectedException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * streamq: ByteChunkQueueTest.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ByteChunkQueueTest {
+
+    private final ByteBufferPool pool = new ByteBufferPool(4, 16);
+
+    @Test(timeout = 10000)
+    public void testTransferringChunks() throws Exception {
+        final byte[] data = randomData(1001);
+        final ByteChunkQueue queue = StreamQ.byteChunkQueue(pool);
+
+        Executors.newCachedThreadPool().submit(() -> produceData(queue, data, 1));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final long transferred = queue.transferTo(Channels.newChannel(out));
+
+        assertThat(transferred, is((long) data.length));
+        assertThat(out.toByteArray(), is(data));
+        assertThat(pool.getAvailable(), is(pool.getSize()));
+    }
+
+    @Test(timeout = 10000)
+    public void testAbortingProducerWhenConsumerFails() throws Exception {
+        final byte[] data = randomData(100);
+        final ByteChunkQueue queue = StreamQ.byteChunkQueue(pool);
+
+        final Future<?> producer = Executors.newCachedThreadPool().submit(() -> produceData(queue, data, 1000));
+
+        try {
+            queue.transferTo(new FailingChannel());
+            fail("Expected failure");
+        } catch (final IOException ignored) {
+        }
+        try {
+            producer.get(5, TimeUnit.SECONDS);
+            fail("Expected producer to fail");
+        } catch (final ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IOException.class));
+        }
+        assertThat(queue.isAborted(), is(true));
+        assertThat(pool.getAvailable(), is(pool.getSize()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRejectingDoubleRelease() throws Exception {
+        final ByteBuffer buffer = pool.acquire();
+        pool.acquire();
+        pool.release(buffer);
+
+        pool.release(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectingForeignBuffer() {
+        pool.release(ByteBuffer.allocateDirect(pool.getBufferSize()));
+    }
+
+    @Test(timeout = 10000)
+    public void testTransferringChunksWithPartialGatheringWrites() throws Exception {
+        final byte[] data = randomData(1001);
+        final ByteChunkQueue queue = StreamQ.byteChunkQueue(pool);
+        final PartialGatheringChannel channel = new PartialGatheringChannel(5);
+
+        Executors.newCachedThreadPool().submit(() -> produceData(queue, data, 1));
+
+        final long transferred = queue.transferTo(channel);
+
+        assertThat(transferred, is((long) data.length));
+        assertThat(channel.out.toByteArray(), is(data));
+        assertThat(pool.getAvailable(), is(pool.getSize()));
+    }
+
+    @Test(timeout = 10000)
+    public void testReturningIteratedChunksToPool() throws Exception {
+        final byte[] data = randomData(1001);
+        final ByteChunkQueue queue = StreamQ.byteChunkQueue(pool);
+
+        Executors.newCachedThreadPool().submit(() -> produceData(queue, data, 1));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final WritableByteChannel channel = Channels.newChannel(out);
+        for (final ByteBuffer chunk : queue) {
+            channel.write(chunk);
+        }
+
+        assertThat(out.toByteArray(), is(data));
+        assertThat(pool.getAvailable(), is(pool.getSize()));
+    }
+
+    @Test(timeout = 10000)
+    public void testReturningChunksConsumedInParallelToPool() throws Exception {
+        final byte[] data = randomData(1001);
+        final ByteChunkQueue queue = StreamQ.byteChunkQueue(pool);
+        final AtomicLong consumed = new AtomicLong();
+
+        Executors.newCachedThreadPool().submit(() -> produceData(queue, data, 10));
+
+        queue.consumeInParallel(Executors.newCachedThreadPool(), 2, 3,
+                chunk -> consumed.addAndGet(chunk.remaining())).get(5, TimeUnit.SECONDS);
+
+        assertThat(consumed.get(), is(10L * data.length));
+        assertThat(pool.getAvailable(), is(pool.getSize()));
+    }
+
+    private static byte[] randomData(final int size) {
+        final byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static Void produceData(final ByteChunkQueue queue, final byte[] data, final int times) throws IOException {
+        try (final OutputStream out = Channels.newOutputStream(queue.writer())) {
+            for (int i = 0; i < times; i++) {
+                for (int offset = 0; offset < data.length; offset += 7) {
+                    out.write(data, offset, Math.min(7, data.length - offset));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Channel writing at most a few bytes per call, so that writes end in the middle of chunks
+     */
+    private static final class PartialGatheringChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final int maxWrite;
+
+        PartialGatheringChannel(final int maxWrite) {
+            this.maxWrite = maxWrite;
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs, final int offset, final int length) {
+            int written = 0;
+            for (int i = offset; i < offset + length && written < maxWrite; i++) {
+                while (srcs[i].hasRemaining() && written < maxWrite) {
+                    out.write(srcs[i].get());
+                    written++;
+                }
+            }
+            return written;
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            return (int) write(new ByteBuffer[]{src});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class FailingChannel implements WritableByteChannel {
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            throw new IOException("Connection reset");
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * streamq: MarkedQueueWorkersTest.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import org.junit.Test;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MarkedQueueWorkersTest {
+
+    @Test(timeout = 10000)
+    public void testAllWorkersTerminate() throws Exception {
+        final MarkedQueue<String> queue = MarkedQ.withMarker("").withCapacity(3).array().build();
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        executor.submit(() -> produceData(queue));
+
+        final Set<String> consumed = ConcurrentHashMap.newKeySet();
+        queue.consumeInParallel(executor, 4, 2, consumed::add).get(5, TimeUnit.SECONDS);
+
+        assertThat(consumed, containsInAnyOrder("0", "1", "2", "3", "4"));
+        assertThat(queue.peek(), is(""));
+    }
+
+    @Test(timeout = 10000)
+    public void testFailureDrainsQueue() throws Exception {
+        final MarkedQueue<String> queue = MarkedQ.withMarker("").withCapacity(1).linked().build();
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        executor.submit(() -> produceData(queue));
+
+        final Set<String> consumed = ConcurrentHashMap.newKeySet();
+        try {
+            queue.consumeInParallel(executor, 2, 1, item -> {
+                if (item.equals("1")) {
+                    throw new IllegalStateException(item);
+                }
+                consumed.add(item);
+            }).get(5, TimeUnit.SECONDS);
+            fail("Expected failure");
+        } catch (final ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+        assertThat(queue, hasSize(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAcceptingZeroWorkers() {
+        StreamQ.queueWithMarker("").consumeInParallel(Runnable::run, 0, 1, item -> {
+        });
+    }
+
+    private void produceData(final Queue<String> dataQ) {
+        final StreamProvider<String> provider = new StreamProvider<>(5, String::valueOf);
+        StreamQ.read(provider.produce())
+                .withMarker("")
+                .into(dataQ);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * streamq: ProducerSchedulerTest.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ProducerSchedulerTest {
+
+    private final ProducerScheduler scheduler = new ProducerScheduler(1, 10, Duration.ofSeconds(1));
+
+    @Test(timeout = 10000)
+    public void testGivingSlotToHigherWeightFirst() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final ProducerScheduler.Ticket holder = scheduler.register(StreamPriority.NORMAL);
+        final ProducerScheduler.Ticket bulk = scheduler.register(StreamPriority.BULK);
+        final ProducerScheduler.Ticket interactive = scheduler.register(StreamPriority.INTERACTIVE);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        scheduler.acquire(holder);
+
+        executor.submit(() -> runOnce(bulk, "bulk", order));
+        awaitWaiting(1);
+        executor.submit(() -> runOnce(interactive, "interactive", order));
+        awaitWaiting(2);
+        scheduler.release(holder);
+        while (order.size() < 2) {
+            Thread.sleep(1);
+        }
+
+        assertThat(order, contains("interactive", "bulk"));
+        assertThat(scheduler.getFreeSlots(), is(1));
+    }
+
+    @Test(timeout = 10000)
+    public void testChargingOnlyUsedPartOfQuantum() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final ProducerScheduler.Ticket holder = scheduler.register(StreamPriority.NORMAL);
+        final ProducerScheduler.Ticket full = scheduler.register(StreamPriority.NORMAL);
+        final ProducerScheduler.Ticket partial = scheduler.register(StreamPriority.NORMAL);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        scheduler.acquire(full);
+        scheduler.release(full);
+        scheduler.acquire(partial);
+        scheduler.release(partial, 1, 0);
+        scheduler.acquire(holder);
+
+        executor.submit(() -> runOnce(full, "full", order));
+        awaitWaiting(1);
+        executor.submit(() -> runOnce(partial, "partial", order));
+        awaitWaiting(2);
+        scheduler.release(holder);
+        while (order.size() < 2) {
+            Thread.sleep(1);
+        }
+
+        assertThat(order, contains("partial", "full"));
+    }
+
+    @Test(timeout = 10000)
+    public void testReadingScheduledStream() {
+        final MarkedQueue<String> queue = MarkedQ.withMarker("").withCapacity(5).build();
+
+        Executors.newCachedThreadPool().submit(() -> StreamQ.read(IntStream.range(0, 100).mapToObj(String::valueOf))
+                .withMarker("")
+                .scheduledBy(scheduler, StreamPriority.BULK)
+                .into(queue));
+
+        final List<String> collected = queue.stream().collect(Collectors.toList());
+
+        assertThat(collected, hasSize(100));
+        assertThat(scheduler.getFreeSlots(), is(1));
+    }
+
+    @Test(timeout = 10000)
+    public void testKeepingSlotOfInterruptedProducerWithoutCompetitors() {
+        final ScheduledQueueWriter<String> writer =
+                new ScheduledQueueWriter<>(new LinkedBlockingQueue<>(), QueueWriter.NO_TIMEOUT, scheduler,
+                        StreamPriority.NORMAL);
+        try {
+            IntStream.range(0, scheduler.getQuota() - 1).forEach(i -> writer.write(String.valueOf(i)));
+            Thread.currentThread().interrupt();
+            writer.write("last in slice");
+
+            assertThat(scheduler.getFreeSlots(), is(0));
+        } finally {
+            writer.finish("");
+            Thread.interrupted();
+        }
+        assertThat(scheduler.getFreeSlots(), is(1));
+    }
+
+    @Test(timeout = 10000)
+    public void testReleasingSlotOfProducerInterruptedAtSliceBoundary() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final ScheduledQueueWriter<String> writer =
+                new ScheduledQueueWriter<>(new LinkedBlockingQueue<>(), QueueWriter.NO_TIMEOUT, scheduler,
+                        StreamPriority.NORMAL);
+        final ProducerScheduler.Ticket competitor = scheduler.register(StreamPriority.NORMAL);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        IntStream.range(0, scheduler.getQuota() - 1).forEach(i -> writer.write(String.valueOf(i)));
+        executor.submit(() -> runOnce(competitor, "competitor", order));
+        awaitWaiting(1);
+
+        Thread.currentThread().interrupt();
+        try {
+            writer.write("last in slice");
+            fail("Expected producer to be interrupted");
+        } catch (final IllegalStateException e) {
+            assertThat(Thread.interrupted(), is(true));
+        }
+        while (order.isEmpty()) {
+            Thread.sleep(1);
+        }
+
+        assertThat(scheduler.getWaitingProducers(), is(0));
+        assertThat(scheduler.getFreeSlots(), is(1));
+    }
+
+    private Void runOnce(final ProducerScheduler.Ticket ticket, final String name, final List<String> order)
+            throws InterruptedException {
+        scheduler.acquire(ticket);
+        order.add(name);
+        scheduler.release(ticket);
+        return null;
+    }
+
+    private void awaitWaiting(final int producers) throws InterruptedException {
+        while (scheduler.getWaitingProducers() < producers) {
+            Thread.sleep(1);
+        }
+    }
+}
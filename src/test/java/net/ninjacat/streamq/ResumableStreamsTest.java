@@ -0,0 +1,164 @@
+/*
+ * streamq: ResumableStreamsTest.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ResumableStreamsTest {
+
+    private final ResumableStreams<String, Integer> streams =
+            ResumableStreams.of(Integer::valueOf, 3, Duration.ofMinutes(1));
+
+    @Test
+    public void testReplayingCompleteStream() {
+        consume("s1", 5, Arrays.asList("0", "1", "2", "3", "4"));
+
+        final Resumption<String, Integer> resumption = streams.resume("s1", 2);
+
+        assertThat(resumption.getReplay(), contains("3", "4"));
+        assertThat(resumption.isRestartRequired(), is(false));
+    }
+
+    @Test
+    public void testRestartingAfterBufferedElements() {
+        consume("s1", 4, Arrays.asList("0", "1", "2", "3", "4"));
+
+        final Resumption<String, Integer> resumption = streams.resume("s1", 2);
+
+        assertThat(resumption.getReplay(), contains("3"));
+        assertThat(resumption.isRestartRequired(), is(true));
+        assertThat(resumption.getRestartAfter(), is(3));
+    }
+
+    @Test
+    public void testRestartingFromClientPositionWhenNotBuffered() {
+        consume("s1", 5, Arrays.asList("0", "1", "2", "3", "4"));
+
+        final Resumption<String, Integer> resumption = streams.resume("s1", 0);
+
+        assertThat(resumption.getReplay(), is(empty()));
+        assertThat(resumption.isRestartRequired(), is(true));
+        assertThat(resumption.getRestartAfter(), is(0));
+    }
+
+    @Test
+    public void testRestartingFromBeginningForUnknownStream() {
+        final Resumption<String, Integer> resumption = streams.resume("unknown", null);
+
+        assertThat(resumption.getReplay(), is(empty()));
+        assertThat(resumption.isRestartRequired(), is(true));
+        assertThat(resumption.getRestartAfter(), nullValue());
+    }
+
+    @Test
+    public void testExpiringBuffers() throws Exception {
+        final ResumableStreams<String, Integer> expiring = ResumableStreams.of(Integer::valueOf, 3, Duration.ZERO);
+        final Iterator<String> output = expiring.track("s1", Arrays.asList("0", "1", "2")).iterator();
+        while (output.hasNext()) {
+            output.next();
+        }
+        Thread.sleep(1);
+
+        assertThat(expiring.resume("s1", 1).isRestartRequired(), is(true));
+    }
+
+    @Test(timeout = 10000)
+    public void testRestartingAfterLastReplayedElementWhileStillRecording() throws Exception {
+        final ResumableStreams<String, Integer> live =
+                ResumableStreams.of(Integer::valueOf, 1000, Duration.ofMinutes(1));
+        final Iterable<String> source = Stream.iterate(0, i -> i + 1).map(String::valueOf)::iterator;
+        final Iterator<String> output = live.track("s1", source).iterator();
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicInteger received = new AtomicInteger();
+        output.next();
+        final Thread recorder = new Thread(() -> {
+            while (!stop.get() && output.hasNext()) {
+                received.set(Integer.valueOf(output.next()));
+            }
+        });
+        recorder.start();
+        try {
+            for (int i = 0; i < 10000; i++) {
+                final int position = received.get();
+                final Resumption<String, Integer> resumption = live.resume("s1", position);
+                final List<String> replay = resumption.getReplay();
+                final Integer lastReplayed = replay.isEmpty()
+                        ? position
+                        : Integer.valueOf(replay.get(replay.size() - 1));
+
+                assertThat(resumption.getRestartAfter(), is(lastReplayed));
+            }
+        } finally {
+            stop.set(true);
+            recorder.join();
+        }
+    }
+
+    @Test
+    public void testRecordingOnlyLatestConnectionOfStream() {
+        final ResumableStreams<String, Integer> live =
+                ResumableStreams.of(Integer::valueOf, 1000, Duration.ofMinutes(1));
+        final Iterator<String> first =
+                live.track("s1", Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8")).iterator();
+        next(first, 5);
+        final Resumption<String, Integer> resumption = live.resume("s1", 2);
+        next(first, 2);
+
+        final Iterator<String> second = live.track("s1", Arrays.asList("5", "6", "7", "8", "9")).iterator();
+        next(first, 1);
+        next(second, 1);
+        next(first, 1);
+        next(second, 2);
+        assertThat(first.hasNext(), is(false));
+        final Resumption<String, Integer> again = live.resume("s1", 4);
+
+        assertThat(resumption.getRestartAfter(), is(4));
+        assertThat(again.getReplay(), contains("5", "6", "7"));
+        assertThat(again.isRestartRequired(), is(true));
+        assertThat(again.getRestartAfter(), is(7));
+        assertThat(live.resume("s1", 2).getReplay(), contains("3", "4", "5", "6", "7"));
+    }
+
+    private static void next(final Iterator<String> output, final int count) {
+        for (int i = 0; i < count; i++) {
+            output.next();
+        }
+    }
+
+    private void consume(final String streamId, final int count, final List<String> elements) {
+        final Iterator<String> output = streams.track(streamId, elements).iterator();
+        for (int i = 0; output.hasNext() && i < count; i++) {
+            output.next();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * streamq: StreamEventsTest.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StreamEventsTest {
+
+    @Test(timeout = 10000)
+    public void testRecordingStreamEvents() throws Exception {
+        final MarkedQueue<String> queue = MarkedQ.withMarker("").linked().build();
+        final List<RecordedEvent> events;
+        try (final Recording recording = new Recording()) {
+            recording.enable("net.ninjacat.streamq.Stream");
+            recording.enable("net.ninjacat.streamq.ConsumerBlocked").withThreshold(Duration.ZERO);
+            recording.start();
+
+            final Future<?> producer = Executors.newCachedThreadPool().submit(() -> produceData(queue));
+            final List<String> collected = queue.stream().collect(Collectors.toList());
+            producer.get(5, TimeUnit.SECONDS);
+            assertThat(collected, contains("0", "1", "2", "3", "4"));
+
+            recording.stop();
+            final Path file = Files.createTempFile("streamq", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        final List<Long> streamElements = events.stream()
+                .filter(event -> isOfStream(event, "net.ninjacat.streamq.Stream", queue))
+                .map(event -> event.getLong("elementCount"))
+                .collect(Collectors.toList());
+        assertThat(streamElements, contains(5L));
+        assertThat(events.stream()
+                .anyMatch(event -> isOfStream(event, "net.ninjacat.streamq.ConsumerBlocked", queue)), is(true));
+    }
+
+    private static boolean isOfStream(final RecordedEvent event, final String name, final MarkedQueue<?> queue) {
+        return event.getEventType().getName().equals(name) && event.getLong("streamId") == queue.getStreamId();
+    }
+
+    private void produceData(final MarkedQueue<String> dataQ) {
+        final StreamProvider<String> provider = new StreamProvider<>(5, String::valueOf);
+        StreamQ.read(provider.produce())
+                .withMarker("")
+                .into(dataQ);
+    }
+}
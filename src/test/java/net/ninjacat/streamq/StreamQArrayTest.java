@@ -39,16 +39,26 @@ package net.ninjacat.streamq;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class StreamQArrayTest {
 
@@ -108,6 +118,34 @@ public class StreamQArrayTest {
         assertThat(result, hasItems("0", "1", "2", "3", "4"));
     }
 
+    @Test(timeout = 10000)
+    public void testProducerGivesUpOnConsumerAfterTimeout() throws Exception {
+        final MarkedQueue<String> queue = MarkedQ.withMarker("").withCapacity(2).array().build();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final Stream<String> stream = new StreamProvider<>(10, String::valueOf).produce()
+                .onClose(() -> closed.set(true));
+
+        final Future<?> producer = Executors.newCachedThreadPool().submit(() -> StreamQ.read(stream)
+                .withMarker("")
+                .withTimeout(Duration.ofMillis(200))
+                .into(queue));
+
+        final Iterator<String> abandoned = queue.iterator();
+        assertThat(abandoned.hasNext(), is(true));
+        assertThat(abandoned.next(), is("0"));
+
+        try {
+            producer.get(5, TimeUnit.SECONDS);
+            fail("Expected producer to give up");
+        } catch (final ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+        assertThat(closed.get(), is(true));
+        while (abandoned.hasNext()) {
+            abandoned.next();
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testNotAcceptingNullAsMarker() {
         StreamQ.queueWithMarker(null);
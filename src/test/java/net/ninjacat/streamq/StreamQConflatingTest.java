@@ -0,0 +1,94 @@
+/*
+ * streamq: StreamQConflatingTest.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StreamQConflatingTest {
+
+    @Test
+    public void shouldCreateConflatingQueue() {
+        final MarkedQueue<String> queue = getQueue();
+
+        assertThat(queue, Matchers.instanceOf(ConflatingMarkedQueue.class));
+    }
+
+    @Test
+    public void testReadingQueue() {
+        final MarkedQueue<String> queue = getQueue();
+
+        Executors.newCachedThreadPool().submit(() -> produceData(queue));
+
+        final List<String> collected = queue.stream().collect(Collectors.toList());
+
+        assertThat(collected, hasItems("0", "1", "2", "3", "4"));
+    }
+
+    @Test
+    public void testReplacingElementInPlace() {
+        final MarkedQueue<String> queue = MarkedQ.withMarker("").conflating(item -> item.split("=")[0]).build();
+
+        queue.add("a=1");
+        queue.add("b=1");
+        queue.add("a=2");
+        queue.add("c=1");
+        queue.add("");
+
+        final List<String> collected = queue.stream().collect(Collectors.toList());
+
+        assertThat(collected, contains("a=2", "b=1", "c=1"));
+    }
+
+    @Test
+    public void testLimitingNumberOfKeys() {
+        final MarkedQueue<String> queue = MarkedQ.withMarker("")
+                .conflating(item -> item.split("=")[0])
+                .withCapacity(2)
+                .build();
+
+        assertThat(queue.offer("a=1"), is(true));
+        assertThat(queue.offer("b=1"), is(true));
+        assertThat(queue.offer("c=1"), is(false));
+        assertThat(queue.offer("b=2"), is(true));
+        assertThat(queue.offer(""), is(true));
+        assertThat(queue.size(), is(3));
+    }
+
+    private MarkedQueue<String> getQueue() {
+        return MarkedQ.withMarker("").conflating(item -> item).build();
+    }
+
+    private void produceData(final Queue<String> dataQ) {
+        final StreamProvider<String> provider = new StreamProvider<>(5, String::valueOf);
+        StreamQ.read(provider.produce())
+                .withMarker("")
+                .into(dataQ);
+    }
+}
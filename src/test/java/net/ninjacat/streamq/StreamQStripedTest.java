@@ -0,0 +1,140 @@
+/*
+ * streamq: StreamQStripedTest.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StreamQStripedTest {
+    private static final int PRODUCERS = 4;
+
+    @Test
+    public void shouldCreateStripedQueue() {
+        final MarkedQueue<String> queue = getQueue();
+
+        assertThat(queue, Matchers.instanceOf(StripedMarkedQueue.class));
+    }
+
+    @Test
+    public void testReadingQueue() {
+        final MarkedQueue<String> queue = getQueue();
+
+        Executors.newCachedThreadPool().submit(() -> produceData(queue));
+
+        final List<String> collected = queue.stream().collect(Collectors.toList());
+
+        assertThat(collected, Matchers.hasItems("0", "1", "2", "3", "4"));
+    }
+
+    @Test
+    public void testReadingQueueWithParallelStream() {
+        final MarkedQueue<String> queue = getQueue();
+
+        Executors.newCachedThreadPool().submit(() -> produceData(queue));
+
+        final List<String> collected = queue.parallelStream().collect(Collectors.toList());
+
+        assertThat(collected, Matchers.hasItems("0", "1", "2", "3", "4"));
+    }
+
+    @Test
+    public void testIteratingOver() {
+        final MarkedQueue<String> queue = getQueue();
+
+        Executors.newCachedThreadPool().submit(() -> produceData(queue));
+
+        final List<String> result = new ArrayList<>();
+        for (final String item : queue) {
+            result.add(item);
+        }
+
+        assertThat(result, Matchers.hasItems("0", "1", "2", "3", "4"));
+    }
+
+    @Test(timeout = 10000)
+    public void testKeepingOrderOfEachProducer() throws Exception {
+        final MarkedQueue<String> queue = MarkedQ.withMarker("").striped(2).withCapacity(8).build();
+        final ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        final CountDownLatch produced = new CountDownLatch(PRODUCERS);
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            final int id = producer;
+            executor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    queue.put(id + ":" + i);
+                }
+                produced.countDown();
+                return null;
+            });
+        }
+        executor.submit(() -> {
+            produced.await();
+            queue.put("");
+            return null;
+        });
+
+        final Map<String, List<Integer>> byProducer = queue.stream()
+                .map(item -> item.split(":"))
+                .collect(Collectors.groupingBy(item -> item[0],
+                        Collectors.mapping(item -> Integer.valueOf(item[1]), Collectors.toList())));
+
+        final List<Integer> expected = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        assertThat(byProducer.size(), is(PRODUCERS));
+        byProducer.values().forEach(items -> assertThat(items, is(expected)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAcceptingNullAsMarker() {
+        new StripedMarkedQueue<>(2, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAcceptingZeroLanes() {
+        MarkedQ.withMarker("").striped(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAcceptingCapacityLessThanLanes() {
+        MarkedQ.withMarker("").striped(4).withCapacity(3).build();
+    }
+
+    private MarkedQueue<String> getQueue() {
+        return MarkedQ.withMarker("").striped(4).build();
+    }
+
+    private void produceData(final Queue<String> dataQ) {
+        final StreamProvider<String> provider = new StreamProvider<>(5, String::valueOf);
+        StreamQ.read(provider.produce())
+                .withMarker("")
+                .into(dataQ);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,137 @@
+/*
+ * streamq: StreamAdmissionTest.java
+ *
+ * Copyright 2019 Oleksiy Voronin <me@ovoronin.info>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.ninjacat.streamq.autoconfigure;
+
+import org.junit.Test;
+import org.springframework.core.task.TaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class StreamAdmissionTest {
+    private final TaskExecutor executor = Executors.newCachedThreadPool()::execute;
+
+    @Test(timeout = 10000)
+    public void testRejectingImmediatelyWhenNoWaitingAllowed() throws Exception {
+        final StreamAdmission admission = new StreamAdmission(executor, admission(0, Duration.ofSeconds(5)));
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        admission.execute(() -> block(running, finish));
+        running.await();
+
+        try {
+            admission.execute(() -> {
+            });
+            fail("Expected stream to be rejected");
+        } catch (final StreamRejectedException e) {
+            assertThat(admission.getActiveStreams(), is(1));
+        }
+        finish.countDown();
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitingForFreeSlot() throws Exception {
+        final StreamAdmission admission = new StreamAdmission(executor, admission(1, Duration.ofSeconds(5)));
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        admission.execute(() -> block(running, finish));
+        running.await();
+
+        final CountDownLatch second = new CountDownLatch(1);
+        final Future<?> waiting = Executors.newSingleThreadExecutor().submit(() -> admission.execute(second::countDown));
+        while (admission.getWaitingStreams() == 0) {
+            Thread.sleep(5);
+        }
+        finish.countDown();
+
+        waiting.get(5, TimeUnit.SECONDS);
+        assertThat(second.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(admission.getWaitingStreams(), is(0));
+    }
+
+    @Test(timeout = 10000)
+    public void testRejectingAfterWaitTimeout() throws Exception {
+        final StreamAdmission admission = new StreamAdmission(executor, admission(1, Duration.ofMillis(100)));
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        admission.execute(() -> block(running, finish));
+        running.await();
+
+        final Future<?> waiting = Executors.newSingleThreadExecutor().submit(() -> admission.execute(() -> {
+        }));
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+            fail("Expected stream to be rejected");
+        } catch (final ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(StreamRejectedException.class));
+        }
+        assertThat(admission.getWaitingStreams(), is(0));
+        finish.countDown();
+    }
+
+    @Test(expected = StreamRejectedException.class)
+    public void testRejectingAfterDestroy() {
+        final StreamAdmission admission = new StreamAdmission(executor, admission(1, Duration.ofSeconds(1)));
+        admission.destroy();
+
+        admission.execute(() -> {
+        });
+    }
+
+    @Test
+    public void testReleasingSlotWhenExecutorFails() {
+        final StreamAdmission admission = new StreamAdmission(task -> {
+            throw new IllegalStateException("broken executor");
+        }, admission(0, Duration.ofSeconds(1)));
+
+        try {
+            admission.execute(() -> {
+            });
+            fail("Expected executor failure");
+        } catch (final IllegalStateException e) {
+            assertThat(admission.getActiveStreams(), is(0));
+        }
+    }
+
+    private static StreamQProperties.Admission admission(final int maxWaiting, final Duration waitTimeout) {
+        final StreamQProperties.Admission properties = new StreamQProperties.Admission();
+        properties.setMaxActiveStreams(1);
+        properties.setMaxWaitingStreams(maxWaiting);
+        properties.setWaitTimeout(waitTimeout);
+        return properties;
+    }
+
+    private static void block(final CountDownLatch running, final CountDownLatch finish) {
+        running.countDown();
+        try {
+            finish.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}